@@ -0,0 +1,33 @@
+// k6 load test for the blocking JDBC endpoints, run it against both thread modes and compare http_reqs/s and p95:
+//   platform threads: mvn spring-boot:run
+//   virtual threads:  mvn -Pjava21 spring-boot:run -Dspring-boot.run.profiles=virtual
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=1000 loadtest/student-read-load.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const baseUrl = __ENV.BASE_URL || 'http://localhost:8080';
+
+export const options = {
+    scenarios: {
+        reads: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: Number(__ENV.VUS || 1000) },
+                { duration: '2m', target: Number(__ENV.VUS || 1000) },
+                { duration: '15s', target: 0 },
+            ],
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+export default function () {
+    const id = 1 + Math.floor(Math.random() * Number(__ENV.MAX_ID || 1000));
+    const responses = http.batch([
+        ['GET', `${baseUrl}/edu/api/v1/getstudents?afterId=${id}&size=50`],
+        ['GET', `${baseUrl}/edu/api/v1/school/countstudents?bornFrom=1990&bornTo=2000`],
+        ['GET', `${baseUrl}/edu/api/v1/school/topscoringstudents?percent=1`],
+    ]);
+    responses.forEach((response) => check(response, { 'status is 200': (r) => r.status === 200 }));
+}
@@ -0,0 +1,41 @@
+// k6 load test for the write paths, run it with and without the prod profile and compare http_reqs/s and p95:
+//   default: mvn spring-boot:run
+//   prod:    mvn spring-boot:run -Dspring-boot.run.profiles=prod
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=200 loadtest/student-write-load.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const baseUrl = __ENV.BASE_URL || 'http://localhost:8080';
+const json = { headers: { 'Content-Type': 'application/json' } };
+
+export const options = {
+    scenarios: {
+        writes: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: Number(__ENV.VUS || 200) },
+                { duration: '2m', target: Number(__ENV.VUS || 200) },
+                { duration: '15s', target: 0 },
+            ],
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+export default function () {
+    const email = `load-${__VU}-${__ITER}-${Date.now()}@example.com`;
+    const added = http.post(`${baseUrl}/edu/api/v1/addstudent`, JSON.stringify({
+        firstName: 'Load',
+        lastName: 'Test',
+        birthDate: '2000-01-01',
+        email: email,
+    }), json);
+    check(added, { 'addstudent status is 200': (r) => r.status === 200 });
+    if (added.status !== 200) {
+        return;
+    }
+    const grade = (Math.floor(Math.random() * 51) / 10).toFixed(1);
+    const graded = http.put(`${baseUrl}/edu/api/v1/setgrade/${added.json('id')}/${grade}`);
+    check(graded, { 'setgrade status is 200': (r) => r.status === 200 });
+}
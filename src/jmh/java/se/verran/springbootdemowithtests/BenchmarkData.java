@@ -0,0 +1,44 @@
+package se.verran.springbootdemowithtests;
+
+import se.verran.springbootdemowithtests.dto.StudentResponse;
+import se.verran.springbootdemowithtests.dto.StudentView;
+import se.verran.springbootdemowithtests.entities.Student;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Synthetic students for the benchmarks, the same seed always gives the same dataset
+public final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    public static List<Student> students(int numberOfStudents) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Student> students = new ArrayList<>(numberOfStudents);
+        for (int i = 1; i <= numberOfStudents; i++) {
+            Student student = new Student("First" + i, "Last" + i,
+                    LocalDate.of(1980 + random.nextInt(25), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                    "student" + i + "@school.se");
+            student.setId(i);
+            // One decimal on the 0.0 - 5.0 scale
+            student.setJavaProgrammingGrade(random.nextInt(51) / 10.0);
+            students.add(student);
+        }
+        return students;
+    }
+
+    // The same students as the controllers hand them to Jackson
+    public static List<StudentResponse> studentResponses(int numberOfStudents) {
+        LocalDate today = LocalDate.of(2024, 9, 1);
+        List<StudentResponse> responses = new ArrayList<>(numberOfStudents);
+        for (Student student : students(numberOfStudents)) {
+            StudentView view = new StudentView(student.getId(), student.getFirstName(), student.getLastName(),
+                    student.getBirthDate(), student.getEmail(), student.getJavaProgrammingGrade(), 0L);
+            responses.add(StudentResponse.from(view, today));
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,90 @@
+package se.verran.springbootdemowithtests.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import se.verran.springbootdemowithtests.BenchmarkData;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// JSON against CBOR and Smile for the same student list, with and without the gzip step server.compression adds.
+// wireSize reports the payload sizes as JMH results, the timings are the CPU side of the trade.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StudentResponseFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    @Param({"300", "10000"})
+    int numberOfStudents;
+
+    List<StudentResponse> students;
+    ObjectMapper objectMapper;
+    byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        students = BenchmarkData.studentResponses(numberOfStudents);
+        objectMapper = switch (format) {
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            default -> new ObjectMapper();
+        };
+        objectMapper.findAndRegisterModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        encoded = objectMapper.writeValueAsBytes(students);
+    }
+
+    // Secondary results next to the score: bytes and gzippedBytes for one encoded list (unit "#")
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireSize {
+        public long bytes;
+        public long gzippedBytes;
+    }
+
+    // A single shot, so the counters hold the size of exactly one encoding instead of a sum over many
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public byte[] wireSize(WireSize wireSize) throws Exception {
+        byte[] bytes = objectMapper.writeValueAsBytes(students);
+        byte[] gzipped = gzip(bytes);
+        wireSize.bytes = bytes.length;
+        wireSize.gzippedBytes = gzipped.length;
+        return gzipped;
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public byte[] serializeAndGzip() throws Exception {
+        return gzip(objectMapper.writeValueAsBytes(students));
+    }
+
+    @Benchmark
+    public StudentResponse[] deserialize() throws Exception {
+        return objectMapper.readValue(encoded, StudentResponse[].class);
+    }
+
+    static byte[] gzip(byte[] bytes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
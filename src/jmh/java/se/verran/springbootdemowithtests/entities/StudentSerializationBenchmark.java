@@ -0,0 +1,38 @@
+package se.verran.springbootdemowithtests.entities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import se.verran.springbootdemowithtests.BenchmarkData;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Student lists serialized the way the controllers do it, with an ObjectMapper set up like Spring Boot's
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StudentSerializationBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int numberOfStudents;
+
+    List<Student> students;
+    ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        students = BenchmarkData.students(numberOfStudents);
+        objectMapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @Benchmark
+    public byte[] serializeStudentList() throws Exception {
+        return objectMapper.writeValueAsBytes(students);
+    }
+}
@@ -0,0 +1,46 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.openjdk.jmh.annotations.*;
+import se.verran.springbootdemowithtests.dto.StudentGroups;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Group assignment on the id/grade arrays, the database read in StudentService.getCohort is not included
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupAssignerBenchmark {
+
+    @Param({"100000", "1000000"})
+    int numberOfStudents;
+
+    @Param({"4", "1000"})
+    int numberOfGroups;
+
+    GroupAssigner.Cohort cohort;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        double[] grades = new double[numberOfStudents];
+        for (int i = 0; i < numberOfStudents; i++)
+            grades[i] = random.nextInt(51) / 10.0;
+        cohort = new GroupAssigner.Cohort(IntStream.rangeClosed(1, numberOfStudents).toArray(), grades);
+    }
+
+    @Benchmark
+    public List<StudentGroups.Group> random() {
+        return GroupAssigner.random(cohort, numberOfGroups, 42L);
+    }
+
+    @Benchmark
+    public List<StudentGroups.Group> balanced() {
+        return GroupAssigner.balanced(cohort, numberOfGroups);
+    }
+}
@@ -0,0 +1,156 @@
+package se.verran.springbootdemowithtests.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import se.verran.springbootdemowithtests.BenchmarkData;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.dto.StudentRank;
+import se.verran.springbootdemowithtests.entities.Student;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// SchoolService on top of an in-memory StudentService, so only the service layer itself is measured
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchoolServiceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    int numberOfStudents;
+
+    List<Student> students;
+    List<StudentGrade> studentGrades;
+    SchoolService schoolService;
+    SchoolStatistics schoolStatistics;
+    GradeRankIndex gradeRankIndex;
+    long gradeChanges;
+
+    @Setup
+    public void setUp() {
+        students = BenchmarkData.students(numberOfStudents);
+        studentGrades = students.stream().map(StudentGrade::from).toList();
+        InMemoryStudentService studentService = new InMemoryStudentService(students, studentGrades);
+        schoolStatistics = new SchoolStatistics(studentService);
+        schoolStatistics.rebuild();
+        gradeRankIndex = new GradeRankIndex(studentService);
+        gradeRankIndex.rebuild();
+        schoolService = new SchoolService(studentService, schoolStatistics, gradeRankIndex, new SimpleMeterRegistry(), Duration.ZERO);
+    }
+
+    @Benchmark
+    public List<StudentGrade> getTopScoringStudents() {
+        return schoolService.getTopScoringStudents();
+    }
+
+    // How getTopScoringStudents() used to work: sort everyone, then take the top 20%
+    @Benchmark
+    public List<Student> getTopScoringStudentsByFullSort() {
+        List<Student> sortedStudentList = students
+                .stream()
+                .sorted((student1, student2)->Double.compare(student2.getJavaProgrammingGrade(), student1.getJavaProgrammingGrade()))
+                .toList();
+        int numberOfTopStudents = (int)Math.ceil(sortedStudentList.size()*0.2);
+        return sortedStudentList.subList(0, numberOfTopStudents);
+    }
+
+    @Benchmark
+    public String calculateAverageGrade() {
+        return schoolService.calculateAverageGrade();
+    }
+
+    @Benchmark
+    public String numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups() {
+        return schoolService.numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(7);
+    }
+
+    @Benchmark
+    public String numberOfGroupsWhenDividedIntoGroupsOf() {
+        return schoolService.numberOfGroupsWhenDividedIntoGroupsOf(4);
+    }
+
+    @Benchmark
+    public SchoolStatistics.Snapshot applyGradeChange() {
+        schoolStatistics.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, 2.5, 4.0, 1L)));
+        return schoolStatistics.getSnapshot();
+    }
+
+    @Benchmark
+    public SchoolStatistics.Snapshot rebuildStatistics() {
+        schoolStatistics.rebuild();
+        return schoolStatistics.getSnapshot();
+    }
+
+    @Benchmark
+    public StudentRank getStudentRank() {
+        return schoolService.getStudentRank(numberOfStudents / 2);
+    }
+
+    // The rank of one student without the index: sort everyone and look for the first with the same grade
+    @Benchmark
+    public long getStudentRankByFullSort() {
+        double grade = students.get(numberOfStudents / 2 - 1).getJavaProgrammingGrade();
+        List<Student> sortedStudentList = students
+                .stream()
+                .sorted((student1, student2)->Double.compare(student2.getJavaProgrammingGrade(), student1.getJavaProgrammingGrade()))
+                .toList();
+        for (int i = 0; i < sortedStudentList.size(); i++) {
+            if(sortedStudentList.get(i).getJavaProgrammingGrade() == grade)
+                return i + 1;
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public StudentRank applyGradeChangeToRankIndex() {
+        // Each change one version newer than the last, the index skips changes it has already seen
+        long version = ++gradeChanges;
+        double grade = (version & 1) == 0 ? 4.0 : 2.5;
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, null, grade, version)));
+        return gradeRankIndex.rankOf(1).orElseThrow();
+    }
+
+    static class InMemoryStudentService extends StudentService {
+        private final List<Student> students;
+        private final List<StudentGrade> studentGrades;
+
+        InMemoryStudentService(List<Student> students, List<StudentGrade> studentGrades) {
+            super(null, event -> { }, false, 500);
+            this.students = students;
+            this.studentGrades = studentGrades;
+        }
+
+        @Override
+        public long countStudents() {
+            return students.size();
+        }
+
+        @Override
+        public List<GradeCount> countStudentsByGrade() {
+            Map<Double, Long> counts = students.stream()
+                    .collect(Collectors.groupingBy(Student::getJavaProgrammingGrade, Collectors.counting()));
+            return counts.entrySet().stream()
+                    .map(entry -> new GradeCount(entry.getKey(), entry.getValue()))
+                    .toList();
+        }
+
+        @Override
+        public GroupAssigner.Cohort getCohort() {
+            return new GroupAssigner.Cohort(
+                    students.stream().mapToInt(Student::getId).toArray(),
+                    students.stream().mapToDouble(Student::getJavaProgrammingGrade).toArray());
+        }
+
+        @Override
+        public List<StudentGrade> getTopScoringStudents(int numberOfStudents) {
+            return TopScoringSelector.select(studentGrades.stream(), numberOfStudents);
+        }
+    }
+}
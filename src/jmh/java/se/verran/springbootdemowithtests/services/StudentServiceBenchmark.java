@@ -0,0 +1,68 @@
+package se.verran.springbootdemowithtests.services;
+
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.entities.Student;
+import se.verran.springbootdemowithtests.repositories.StudentRepository;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Grade parsing and validation in setGradeForStudentById, the repository only hands back the same student and every
+// conditional update succeeds, so a call is one attempt without retries
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StudentServiceBenchmark {
+
+    private static final String[] VALID_GRADES = {"0", "1.5", "2.7", "3", "4.9", "5.0"};
+    private static final String[] INVALID_GRADES = {"5.1", "-1", "A", "", "4,5", "NaN"};
+
+    StudentService studentService;
+    int next;
+
+    @Setup
+    public void setUp() {
+        Student student = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        student.setId(1);
+        student.setVersion(0L);
+        StudentRepository studentRepository = (StudentRepository) Proxy.newProxyInstance(
+                StudentRepository.class.getClassLoader(),
+                new Class<?>[]{StudentRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Optional.of(student);
+                    case "save" -> args[0];
+                    case "updateGradeIfVersionMatches" -> 1;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        studentService = new StudentService(studentRepository, event -> { }, false, 500);
+        // Injected by @PersistenceContext in the application, only touched when an attempt has to be retried
+        EntityManager entityManager = (EntityManager) Proxy.newProxyInstance(
+                EntityManager.class.getClassLoader(),
+                new Class<?>[]{EntityManager.class},
+                (proxy, method, args) -> null);
+        ReflectionTestUtils.setField(studentService, "entityManager", entityManager);
+    }
+
+    @Benchmark
+    public Student setGradeForStudentByIdWithValidGrade() {
+        return studentService.setGradeForStudentById(1, VALID_GRADES[next++ % VALID_GRADES.length]);
+    }
+
+    @Benchmark
+    public void setGradeForStudentByIdWithInvalidGrade(Blackhole blackhole) {
+        try {
+            blackhole.consume(studentService.setGradeForStudentById(1, INVALID_GRADES[next++ % INVALID_GRADES.length]));
+        } catch (ResponseStatusException e) {
+            blackhole.consume(e);
+        }
+    }
+}
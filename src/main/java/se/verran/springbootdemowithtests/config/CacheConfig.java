@@ -0,0 +1,12 @@
+package se.verran.springbootdemowithtests.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Cache sizes and TTLs are set with spring.cache.caffeine.spec in application.properties
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String STUDENTS_CACHE = "students";
+}
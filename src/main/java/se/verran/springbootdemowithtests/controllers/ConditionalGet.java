@@ -0,0 +1,26 @@
+package se.verran.springbootdemowithtests.controllers;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import se.verran.springbootdemowithtests.services.StudentDataVersion;
+
+import java.util.function.Supplier;
+
+// Answers If-None-Match with 304 before the body is computed.
+// no-cache makes clients revalidate every time instead of guessing a lifetime of their own.
+// The ETag is the same for JSON, CBOR and Smile, Vary: Accept keeps caches from handing one format to a client that asked for another.
+final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    static <T> ResponseEntity<T> ifModified(StudentDataVersion studentDataVersion, WebRequest webRequest, Supplier<T> body) {
+        StudentDataVersion.Version version = studentDataVersion.current();
+        if(webRequest.checkNotModified(version.eTag()))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT).build();
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT).body(body.get());
+    }
+}
@@ -0,0 +1,23 @@
+package se.verran.springbootdemowithtests.controllers;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.io.IOException;
+import java.sql.SQLTransientConnectionException;
+
+// No pooled connection within spring.datasource.hikari.connection-timeout means the database is overloaded,
+// that is a 503 the client may retry, not a 500. sendError keeps the usual Spring Boot error body.
+@RestControllerAdvice
+public class DatabaseUnavailableHandler {
+
+    @ExceptionHandler({CannotCreateTransactionException.class, SQLTransientConnectionException.class})
+    public void handleNoConnection(HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "No database connection available, try again shortly");
+    }
+}
@@ -0,0 +1,40 @@
+package se.verran.springbootdemowithtests.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.entities.Student;
+import se.verran.springbootdemowithtests.services.ReactiveStudentService;
+
+// Non-blocking variants of the read endpoints. Lists are written as NDJSON one row at a time,
+// so slow clients get backpressure instead of a buffered list and no servlet thread waits on the database
+@RestController
+@RequestMapping("/edu/api/v1/reactive")
+public class ReactiveStudentController {
+    private final ReactiveStudentService reactiveStudentService;
+
+    @Autowired
+    public ReactiveStudentController(ReactiveStudentService reactiveStudentService) {
+        this.reactiveStudentService = reactiveStudentService;
+    }
+
+    @GetMapping(value = "/getallstudents", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Student> getAllStudents(){
+        return reactiveStudentService.getAllStudents();
+    }
+    @GetMapping("/getstudentbyid/{id}")
+    public Mono<Student> getStudentById(@PathVariable int id){
+        return reactiveStudentService.getStudentById(id);
+    }
+    @GetMapping(value = "/top20percentscoringstudents", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<StudentGrade> getTopScoringStudents(){
+        return reactiveStudentService.getTopScoringStudents(20);
+    }
+    @GetMapping(value = "/topscoringstudents", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<StudentGrade> getTopScoringStudents(@RequestParam(defaultValue = "20") double percent){
+        return reactiveStudentService.getTopScoringStudents(percent);
+    }
+}
@@ -4,9 +4,16 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import se.verran.springbootdemowithtests.entities.Student;
+import org.springframework.web.context.request.WebRequest;
+import se.verran.springbootdemowithtests.dto.GradeDistribution;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.dto.StudentGroups;
+import se.verran.springbootdemowithtests.dto.StudentRank;
 import se.verran.springbootdemowithtests.services.SchoolService;
+import se.verran.springbootdemowithtests.services.SchoolStatistics;
+import se.verran.springbootdemowithtests.services.StudentDataVersion;
 import se.verran.springbootdemowithtests.services.StudentService;
 
 import java.util.List;
@@ -17,15 +24,24 @@ public class SchoolController {
 
     private final StudentService studentService;
     private final SchoolService schoolService;
+    private final StudentDataVersion studentDataVersion;
 
-    public SchoolController(StudentService studentService, SchoolService schoolService) {
+    public SchoolController(StudentService studentService, SchoolService schoolService, StudentDataVersion studentDataVersion) {
         this.studentService = studentService;
         this.schoolService = schoolService;
+        this.studentDataVersion = studentDataVersion;
     }
 
     @GetMapping("/countstudents")
-    public ResponseEntity<Integer> countStudents(){
-        return ResponseEntity.ok(studentService.getAllStudents().size());
+    public ResponseEntity<Long> countStudents(@RequestParam(required = false) Boolean graded,
+                                              @RequestParam(required = false) Integer bornFrom,
+                                              @RequestParam(required = false) Integer bornTo,
+                                              WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, () -> schoolService.countStudents(graded, bornFrom, bornTo));
+    }
+    @GetMapping("/statistics")
+    public ResponseEntity<SchoolStatistics.Snapshot> getStatistics(WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, schoolService::getStatistics);
     }
     @GetMapping("/divideintogroupsof/{n}")
     public ResponseEntity<String> getNumberOfGroupsWhenNStudentsPerGroup(@PathVariable int n){
@@ -35,12 +51,36 @@ public class SchoolController {
     public ResponseEntity<String> getStudentsPerGroup(@PathVariable int n){
         return ResponseEntity.ok(schoolService.numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(n));
     }
+    // e.g. /creategroups?numberOfGroups=8&strategy=balanced or /creategroups?studentsPerGroup=4&seed=42
+    @GetMapping("/creategroups")
+    public ResponseEntity<StudentGroups> createGroups(@RequestParam(defaultValue = "random") String strategy,
+                                                      @RequestParam(required = false) Integer numberOfGroups,
+                                                      @RequestParam(required = false) Integer studentsPerGroup,
+                                                      @RequestParam(required = false) Long seed){
+        return ResponseEntity.ok(schoolService.createGroups(strategy, numberOfGroups, studentsPerGroup, seed));
+    }
     @GetMapping("/averagegrade")
-    public ResponseEntity<String> getAverageGrade(){
-        return ResponseEntity.ok(schoolService.calculateAverageGrade());
+    public ResponseEntity<String> getAverageGrade(WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, schoolService::calculateAverageGrade);
+    }
+    @GetMapping("/gradedistribution")
+    public ResponseEntity<GradeDistribution> getGradeDistribution(@RequestParam(defaultValue = "10,25,50,75,90") double[] percentiles, WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, () -> schoolService.getGradeDistribution(percentiles));
+    }
+    @GetMapping("/studentrank/{studentId}")
+    public ResponseEntity<StudentRank> getStudentRank(@PathVariable int studentId){
+        return ResponseEntity.ok(schoolService.getStudentRank(studentId));
+    }
+    @GetMapping("/studentatposition/{position}")
+    public ResponseEntity<StudentRank> getStudentAtPosition(@PathVariable long position){
+        return ResponseEntity.ok(schoolService.getStudentAtPosition(position));
     }
     @GetMapping("/top20percentscoringstudents")
-    public ResponseEntity<List<Student>> getTopScoringStudents(){
-        return ResponseEntity.ok(schoolService.getTopScoringStudents());
+    public ResponseEntity<List<StudentGrade>> getTopScoringStudents(WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, () -> schoolService.getTopScoringStudents());
+    }
+    @GetMapping("/topscoringstudents")
+    public ResponseEntity<List<StudentGrade>> getTopScoringStudents(@RequestParam(defaultValue = "20") double percent, WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, () -> schoolService.getTopScoringStudents(percent));
     }
 }
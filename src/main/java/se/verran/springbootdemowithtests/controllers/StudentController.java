@@ -1,34 +1,109 @@
 package se.verran.springbootdemowithtests.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import se.verran.springbootdemowithtests.dto.BulkImportResult;
+import se.verran.springbootdemowithtests.dto.GradeAssignment;
+import se.verran.springbootdemowithtests.dto.GradeResult;
+import se.verran.springbootdemowithtests.dto.StudentPage;
+import se.verran.springbootdemowithtests.dto.StudentResponse;
+import se.verran.springbootdemowithtests.dto.StudentSearchFilter;
+import se.verran.springbootdemowithtests.dto.StudentSearchResult;
 import se.verran.springbootdemowithtests.entities.Student;
+import se.verran.springbootdemowithtests.services.StudentCsv;
+import se.verran.springbootdemowithtests.services.StudentDataVersion;
 import se.verran.springbootdemowithtests.services.StudentService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/edu/api/v1")
 public class StudentController {
+    static final String APPLICATION_CBOR_SEQ_VALUE = "application/cbor-seq";
+
     private final StudentService studentService;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborObjectMapper;
+    private final StudentDataVersion studentDataVersion;
 
     @Autowired
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, ObjectMapper objectMapper,
+                             MappingJackson2CborHttpMessageConverter cborHttpMessageConverter, StudentDataVersion studentDataVersion) {
         this.studentService = studentService;
+        this.objectMapper = objectMapper;
+        this.cborObjectMapper = cborHttpMessageConverter.getObjectMapper();
+        this.studentDataVersion = studentDataVersion;
     }
 
     @PostMapping("/addstudent")
     public ResponseEntity<Student> addStudent(@RequestBody Student student){
         return ResponseEntity.ok(studentService.addStudent(student));
     }
+    @PostMapping(value = "/addstudents", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkImportResult> addStudents(@RequestBody List<Student> students){
+        return ResponseEntity.ok(studentService.addStudents(students));
+    }
+    @PostMapping(value = "/addstudents", consumes = "text/csv")
+    public ResponseEntity<BulkImportResult> addStudentsFromCsv(@RequestBody String csv){
+        return ResponseEntity.ok(studentService.addStudents(StudentCsv.parse(csv)));
+    }
     @GetMapping("/getstudentbyid/{id}")
     public ResponseEntity<Student> getStudentById(@PathVariable int id){
-        return ResponseEntity.ok(studentService.getStudentById(id));
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(studentService.getStudentById(id));
     }
     @GetMapping("/getallstudents")
-    public ResponseEntity<List<Student>> getAllStudents(){
-        return ResponseEntity.ok(studentService.getAllStudents());
+    public ResponseEntity<List<StudentResponse>> getAllStudents(WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, studentService::getAllStudentResponses);
+    }
+    @GetMapping("/getstudents")
+    public ResponseEntity<StudentPage> getStudents(@RequestParam(defaultValue = "0") int afterId, @RequestParam(defaultValue = "100") int size, WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, () -> studentService.getStudentsAfterId(afterId, size));
+    }
+    // e.g. /searchstudents?lastName=ols&minGrade=3&bornFrom=1995-01-01&sort=lastName,asc&page=0&size=20
+    @GetMapping("/searchstudents")
+    public ResponseEntity<StudentSearchResult> searchStudents(StudentSearchFilter filter, @PageableDefault(size = 20) Pageable pageable, WebRequest webRequest){
+        return ConditionalGet.ifModified(studentDataVersion, webRequest, () -> studentService.searchStudents(filter, pageable));
+    }
+    // One JSON document per line, written while the rows are still coming from the database
+    @GetMapping(value = "/streamallstudents", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllStudents(){
+        StreamingResponseBody body = outputStream -> studentService.forEachStudent(student -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(student));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).varyBy(HttpHeaders.ACCEPT).body(body);
+    }
+    // The binary counterpart, a CBOR sequence (RFC 8742): one CBOR item per student, back to back
+    @GetMapping(value = "/streamallstudents", produces = APPLICATION_CBOR_SEQ_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllStudentsAsCbor(){
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = cborObjectMapper.createGenerator(outputStream)) {
+                studentService.forEachStudent(student -> {
+                    try {
+                        cborObjectMapper.writeValue(generator, student);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_CBOR_SEQ_VALUE)).varyBy(HttpHeaders.ACCEPT).body(body);
     }
     @PutMapping("/updatestudent")
     public ResponseEntity<Student> updateStudentById(@RequestBody Student student){
@@ -38,6 +113,10 @@ public class StudentController {
     public ResponseEntity<Student> setGradeForStudentById(@PathVariable int studentId, @PathVariable String grade){
         return ResponseEntity.ok(studentService.setGradeForStudentById(studentId, grade));
     }
+    @PutMapping("/setgrades")
+    public ResponseEntity<List<GradeResult>> setGradesForStudents(@RequestBody List<GradeAssignment> gradeAssignments){
+        return ResponseEntity.ok(studentService.setGradesForStudents(gradeAssignments));
+    }
     @DeleteMapping("/deletestudentbyid/{id}")
     public ResponseEntity<String> deleteStudentById(@PathVariable int id){
         studentService.deleteStudent(id);
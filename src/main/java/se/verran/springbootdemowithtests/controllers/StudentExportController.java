@@ -0,0 +1,51 @@
+package se.verran.springbootdemowithtests.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import se.verran.springbootdemowithtests.dto.ExportJobStatus;
+import se.verran.springbootdemowithtests.services.StudentExportService;
+
+import java.util.List;
+
+// Start an export, poll its status, download the file once it is done
+@RestController
+@RequestMapping("/edu/api/v1")
+public class StudentExportController {
+    private final StudentExportService studentExportService;
+
+    @Autowired
+    public StudentExportController(StudentExportService studentExportService) {
+        this.studentExportService = studentExportService;
+    }
+
+    @PostMapping("/exportstudents")
+    public ResponseEntity<ExportJobStatus> exportStudents(@RequestParam(defaultValue = "false") boolean gzip){
+        ExportJobStatus status = studentExportService.startExport(gzip);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath().path("/edu/api/v1/getexport/{id}").build(status.id()))
+                .body(status);
+    }
+    @GetMapping("/getexport/{id}")
+    public ResponseEntity<ExportJobStatus> getExport(@PathVariable String id){
+        return ResponseEntity.ok(studentExportService.getStatus(id));
+    }
+    @GetMapping("/getallexports")
+    public ResponseEntity<List<ExportJobStatus>> getAllExports(){
+        return ResponseEntity.ok(studentExportService.getAllStatuses());
+    }
+    @GetMapping("/downloadexport/{id}")
+    public ResponseEntity<Resource> downloadExport(@PathVariable String id){
+        String fileName = studentExportService.getFileName(id);
+        return ResponseEntity.ok()
+                .contentType(fileName.endsWith(".gz") ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(new FileSystemResource(studentExportService.getFile(id)));
+    }
+}
@@ -0,0 +1,6 @@
+package se.verran.springbootdemowithtests.dto;
+
+import java.util.List;
+
+public record BulkImportResult(int imported, List<ImportConflict> conflicts) {
+}
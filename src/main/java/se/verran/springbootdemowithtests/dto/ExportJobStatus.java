@@ -0,0 +1,8 @@
+package se.verran.springbootdemowithtests.dto;
+
+import java.time.Instant;
+
+public record ExportJobStatus(String id, State state, boolean gzip, long rows, Instant createdAt, Instant finishedAt, String error) {
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+}
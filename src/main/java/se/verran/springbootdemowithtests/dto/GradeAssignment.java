@@ -0,0 +1,5 @@
+package se.verran.springbootdemowithtests.dto;
+
+// Grade is a string so it goes through the same parsing and validation as PUT /setgrade/{studentId}/{grade}
+public record GradeAssignment(int studentId, String grade) {
+}
@@ -0,0 +1,5 @@
+package se.verran.springbootdemowithtests.dto;
+
+// Number of students that share the same grade
+public record GradeCount(Double grade, long count) {
+}
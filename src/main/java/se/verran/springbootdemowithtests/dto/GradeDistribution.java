@@ -0,0 +1,15 @@
+package se.verran.springbootdemowithtests.dto;
+
+import java.util.List;
+
+// Spread of the grades of all graded students, ungraded students are left out
+public record GradeDistribution(long numberOfGradedStudents, double mean, double median, double standardDeviation,
+                                double min, double max, List<Percentile> percentiles, List<HistogramBucket> histogram) {
+
+    public record Percentile(double percentile, double grade) {
+    }
+
+    // from is inclusive, to is exclusive except for the last bucket, which also holds 5.0
+    public record HistogramBucket(double from, double to, long count) {
+    }
+}
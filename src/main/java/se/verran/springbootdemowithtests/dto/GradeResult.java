@@ -0,0 +1,6 @@
+package se.verran.springbootdemowithtests.dto;
+
+import org.springframework.http.HttpStatus;
+
+public record GradeResult(int studentId, String grade, HttpStatus status, String message) {
+}
@@ -0,0 +1,5 @@
+package se.verran.springbootdemowithtests.dto;
+
+// A row that was left out of a bulk import, row numbers start at 1
+public record ImportConflict(int row, String email, String reason) {
+}
@@ -0,0 +1,11 @@
+package se.verran.springbootdemowithtests.dto;
+
+import se.verran.springbootdemowithtests.entities.Student;
+
+// Lightweight read model for grade listings, fetched straight from the database without hydrating Student entities
+public record StudentGrade(int id, String firstName, String lastName, Double javaProgrammingGrade) {
+
+    public static StudentGrade from(Student student) {
+        return new StudentGrade(student.getId(), student.getFirstName(), student.getLastName(), student.getJavaProgrammingGrade());
+    }
+}
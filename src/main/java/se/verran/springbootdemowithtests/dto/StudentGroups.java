@@ -0,0 +1,11 @@
+package se.verran.springbootdemowithtests.dto;
+
+import java.util.List;
+
+// seed is the one the random strategy used, send it again to get the same groups. It is null for balanced groups.
+public record StudentGroups(String strategy, Long seed, int numberOfStudents, List<Group> groups) {
+
+    // averageGrade only counts graded members and is null when nobody in the group is graded
+    public record Group(int number, int size, Double averageGrade, int[] studentIds) {
+    }
+}
@@ -0,0 +1,5 @@
+package se.verran.springbootdemowithtests.dto;
+
+// The two columns group assignment needs, javaProgrammingGrade is null for ungraded students
+public record StudentIdGrade(int id, Double javaProgrammingGrade) {
+}
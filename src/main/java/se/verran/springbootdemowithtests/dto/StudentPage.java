@@ -0,0 +1,7 @@
+package se.verran.springbootdemowithtests.dto;
+
+import java.util.List;
+
+// One page of a keyset (id-based) listing, nextAfterId is null on the last page
+public record StudentPage(List<StudentResponse> students, Integer nextAfterId) {
+}
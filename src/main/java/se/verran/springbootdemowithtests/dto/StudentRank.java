@@ -0,0 +1,6 @@
+package se.verran.springbootdemowithtests.dto;
+
+// rank 1 is the best grade and students with the same grade share a rank (1, 2, 2, 4),
+// percentile is the share of graded students with a lower grade. Ungraded students are not ranked.
+public record StudentRank(int studentId, double grade, long rank, long numberOfGradedStudents, double percentile) {
+}
@@ -0,0 +1,14 @@
+package se.verran.springbootdemowithtests.dto;
+
+import java.time.LocalDate;
+import java.time.Period;
+
+// Same JSON as a serialized Student, but the age is worked out from a date the caller reads once per request
+public record StudentResponse(int id, String firstName, String lastName, LocalDate birthDate, String email,
+                              Double javaProgrammingGrade, Long version, int age) {
+
+    public static StudentResponse from(StudentView student, LocalDate today) {
+        return new StudentResponse(student.id(), student.firstName(), student.lastName(), student.birthDate(),
+                student.email(), student.javaProgrammingGrade(), student.version(), Period.between(student.birthDate(), today).getYears());
+    }
+}
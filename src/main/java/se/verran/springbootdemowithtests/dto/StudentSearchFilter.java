@@ -0,0 +1,13 @@
+package se.verran.springbootdemowithtests.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+// Bound from the query string of /searchstudents, every field is optional and they are combined with AND.
+// firstName and lastName are prefixes, bornFrom/bornTo and minGrade/maxGrade are inclusive.
+public record StudentSearchFilter(String firstName, String lastName, String email,
+                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornFrom,
+                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bornTo,
+                                  Double minGrade, Double maxGrade) {
+}
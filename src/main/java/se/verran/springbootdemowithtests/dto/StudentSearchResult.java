@@ -0,0 +1,7 @@
+package se.verran.springbootdemowithtests.dto;
+
+import java.util.List;
+
+// No total count, counting every match of a short prefix costs more than reading the page itself
+public record StudentSearchResult(List<StudentResponse> students, int page, int size, boolean hasNext) {
+}
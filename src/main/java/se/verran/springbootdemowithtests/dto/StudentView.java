@@ -0,0 +1,8 @@
+package se.verran.springbootdemowithtests.dto;
+
+import java.time.LocalDate;
+
+// The student columns without the JPA entity around them, read-only and never registered in the persistence context
+public record StudentView(int id, String firstName, String lastName, LocalDate birthDate, String email, Double javaProgrammingGrade,
+                          Long version) {
+}
@@ -1,25 +1,50 @@
 package se.verran.springbootdemowithtests.entities;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDate;
 import java.time.Period;
 
+// The second-level cache is only used with the l2cache profile. hibernate-jcache on the classpath would switch it on
+// everywhere, so application.properties turns it off for the other profiles.
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "student")
+// The grade index matches the top-scoring query (grade descending, id as tie-breaker),
+// the name and birth date indexes serve the prefix and range filters of the search
+@Table(name = "student",
+        indexes = {
+                @Index(name = "idx_student_grade", columnList = "java_programming_grade desc, id"),
+                @Index(name = "idx_student_first_name", columnList = "first_name"),
+                @Index(name = "idx_student_last_name", columnList = "last_name"),
+                @Index(name = "idx_student_birth_date", columnList = "birth_date")
+        },
+        uniqueConstraints = @UniqueConstraint(name = Student.EMAIL_CONSTRAINT, columnNames = "email"))
 public class Student {
+    public static final String EMAIL_CONSTRAINT = "uk_student_email";
+    public static final int NAME_LENGTH = 50;
+    public static final int EMAIL_LENGTH = 50;
+
+    // A pooled sequence hands out ids in blocks of 50, IDENTITY would stop Hibernate from batching inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+    @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = 50)
     private int id;
-    @Column(length = 50, nullable = false)
+    @Column(length = NAME_LENGTH, nullable = false)
     private String firstName;
-    @Column(length = 50, nullable = false)
+    @Column(length = NAME_LENGTH, nullable = false)
     private String lastName;
     @Column(nullable = false)
     private LocalDate birthDate;
-    @Column(length = 50, nullable = false)
+    @Column(length = EMAIL_LENGTH, nullable = false)
     private String email;
     @Column(length = 1)
     private Double javaProgrammingGrade;
+    // Optimistic locking, every UPDATE checks and bumps it. Null means the student hasn't been saved yet
+    @Version
+    private Long version;
 
     public Student() {
     }
@@ -79,4 +104,12 @@ public class Student {
     public void setJavaProgrammingGrade(Double javaProgrammingGrade) {
         this.javaProgrammingGrade = javaProgrammingGrade;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
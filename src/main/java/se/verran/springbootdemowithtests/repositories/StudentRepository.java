@@ -1,11 +1,71 @@
 package se.verran.springbootdemowithtests.repositories;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.dto.StudentIdGrade;
+import se.verran.springbootdemowithtests.dto.StudentView;
 import se.verran.springbootdemowithtests.entities.Student;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
 @Repository
-public interface StudentRepository extends JpaRepository<Student, Integer> {
+public interface StudentRepository extends JpaRepository<Student, Integer>, JpaSpecificationExecutor<Student>, StudentViewSearch {
 
     // A "self-made" method, either query method or a native query, has to be tested
     boolean existsStudentByEmail(String email);
+
+    // Set-based duplicate check for bulk imports
+    @Query("SELECT s.email FROM Student s WHERE s.email IN :emails")
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    // Aggregates are computed by the database so no Student entities have to be loaded.
+    // Grades are on a 0.0 - 5.0 scale, so this returns a handful of rows however many students there are
+    @Query("SELECT new se.verran.springbootdemowithtests.dto.GradeCount(s.javaProgrammingGrade, COUNT(s)) FROM Student s " +
+            "WHERE s.javaProgrammingGrade IS NOT NULL GROUP BY s.javaProgrammingGrade")
+    List<GradeCount> countStudentsByGrade();
+
+    // Top-N is done by the database (ORDER BY ... LIMIT n), backed by an index on javaProgrammingGrade
+    List<StudentGrade> findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc(Limit limit);
+
+    // Has to be consumed inside a transaction and closed afterwards
+    Stream<StudentGrade> streamByJavaProgrammingGradeIsNotNull();
+
+    // The listings below select the columns into StudentView, so no entities are hydrated or dirty checked
+    List<StudentView> findAllViewsByOrderByIdAsc();
+
+    // Compare-and-set on the version column, returns 0 when someone else changed or deleted the student first
+    @Transactional
+    @Modifying
+    @Query("UPDATE Student s SET s.javaProgrammingGrade = :grade, s.version = s.version + 1 WHERE s.id = :id AND s.version = :version")
+    int updateGradeIfVersionMatches(int id, double grade, long version);
+
+    // Same check for deletes, so the grade read together with the version is the one that is deleted
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Student s WHERE s.id = :id AND s.version = :version")
+    int deleteIfVersionMatches(int id, long version);
+
+    // Keyset pagination, the primary key index makes every page equally cheap no matter how deep it is
+    List<StudentView> findByIdGreaterThanOrderByIdAsc(int id, Limit limit);
+
+    // Rows are pulled from a JDBC cursor in chunks of the fetch size (MySQL needs useCursorFetch=true)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<StudentView> streamAllByOrderByIdAsc();
+
+    // Only id and grade, for group assignment over the whole cohort
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<StudentIdGrade> streamIdGradesByOrderByIdAsc();
 }
@@ -0,0 +1,53 @@
+package se.verran.springbootdemowithtests.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+import se.verran.springbootdemowithtests.entities.Student;
+
+import java.time.LocalDate;
+
+// Filters for StudentRepository, combine them with Specification.allOf(...)
+public final class StudentSpecifications {
+
+    private StudentSpecifications() {
+    }
+
+    public static Specification<Student> isGraded(boolean graded) {
+        return (root, query, builder) -> graded
+                ? builder.isNotNull(root.get("javaProgrammingGrade"))
+                : builder.isNull(root.get("javaProgrammingGrade"));
+    }
+
+    public static Specification<Student> bornOnOrAfter(LocalDate date) {
+        return (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("birthDate"), date);
+    }
+
+    public static Specification<Student> bornOnOrBefore(LocalDate date) {
+        return (root, query, builder) -> builder.lessThanOrEqualTo(root.get("birthDate"), date);
+    }
+
+    // LIKE 'prefix%' is a range scan on the name index, a leading % or lower() around the column would scan the table.
+    // Case-insensitive with MySQL's default collation.
+    public static Specification<Student> firstNameStartsWith(String prefix) {
+        return (root, query, builder) -> builder.like(root.get("firstName"), escapeLike(prefix) + "%", '\\');
+    }
+
+    public static Specification<Student> lastNameStartsWith(String prefix) {
+        return (root, query, builder) -> builder.like(root.get("lastName"), escapeLike(prefix) + "%", '\\');
+    }
+
+    public static Specification<Student> hasEmail(String email) {
+        return (root, query, builder) -> builder.equal(root.get("email"), email);
+    }
+
+    public static Specification<Student> gradeAtLeast(double grade) {
+        return (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("javaProgrammingGrade"), grade);
+    }
+
+    public static Specification<Student> gradeAtMost(double grade) {
+        return (root, query, builder) -> builder.lessThanOrEqualTo(root.get("javaProgrammingGrade"), grade);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,15 @@
+package se.verran.springbootdemowithtests.repositories;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import se.verran.springbootdemowithtests.dto.StudentView;
+import se.verran.springbootdemowithtests.entities.Student;
+
+// Specification queries that select StudentView instead of Student, mixed into StudentRepository.
+// findBy(spec, query -> query.as(...)) would still load every entity and convert it afterwards.
+public interface StudentViewSearch {
+
+    // limit rows starting at row offset (0-based) of the sorted matches
+    Window<StudentView> findViewsBy(Specification<Student> specification, Sort sort, long offset, int limit);
+}
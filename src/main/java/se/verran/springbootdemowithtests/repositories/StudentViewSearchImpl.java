@@ -0,0 +1,43 @@
+package se.verran.springbootdemowithtests.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import se.verran.springbootdemowithtests.dto.StudentView;
+import se.verran.springbootdemowithtests.entities.Student;
+
+import java.util.List;
+
+class StudentViewSearchImpl implements StudentViewSearch {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Window<StudentView> findViewsBy(Specification<Student> specification, Sort sort, long offset, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<StudentView> query = builder.createQuery(StudentView.class);
+        Root<Student> student = query.from(Student.class);
+        query.select(builder.construct(StudentView.class, student.get("id"), student.get("firstName"), student.get("lastName"),
+                student.get("birthDate"), student.get("email"), student.get("javaProgrammingGrade"), student.get("version")));
+        Predicate predicate = specification.toPredicate(student, query, builder);
+        if(predicate != null)
+            query.where(predicate);
+        query.orderBy(QueryUtils.toOrders(sort, student, builder));
+        // One row more than asked for tells whether there is a next window, without counting the matches
+        List<StudentView> views = entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit + 1)
+                .getResultList();
+        boolean hasNext = views.size() > limit;
+        return Window.from(hasNext ? views.subList(0, limit) : views, index -> ScrollPosition.offset(offset + index), hasNext);
+    }
+}
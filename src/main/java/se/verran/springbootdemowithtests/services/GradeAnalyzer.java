@@ -0,0 +1,75 @@
+package se.verran.springbootdemowithtests.services;
+
+import se.verran.springbootdemowithtests.dto.GradeCount;
+import se.verran.springbootdemowithtests.dto.GradeDistribution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+// Works on the grade counts from GROUP BY grade instead of on students, so memory and time depend on the number of
+// distinct grades and not on the number of students. The results are exact, not estimates.
+public final class GradeAnalyzer {
+
+    private GradeAnalyzer() {
+    }
+
+    public static GradeDistribution analyze(Collection<GradeCount> gradeCounts, double... percentiles) {
+        List<GradeCount> sortedCounts = gradeCounts.stream()
+                .filter(gradeCount -> gradeCount.grade() != null && gradeCount.count() > 0)
+                .sorted(Comparator.comparingDouble(GradeCount::grade))
+                .toList();
+        if(sortedCounts.isEmpty())
+            throw new IllegalArgumentException("No grades to analyze");
+
+        double[] grades = new double[sortedCounts.size()];
+        // cumulativeCounts[i] is the number of students with a grade <= grades[i]
+        long[] cumulativeCounts = new long[sortedCounts.size()];
+        long[] histogram = new long[SchoolStatistics.HISTOGRAM_BUCKETS];
+        // Welford's running mean and sum of squared deviations, weighted by the count of each grade
+        long numberOfStudents = 0;
+        double mean = 0.0;
+        double squaredDeviations = 0.0;
+        for (int i = 0; i < sortedCounts.size(); i++) {
+            double grade = sortedCounts.get(i).grade();
+            long count = sortedCounts.get(i).count();
+            numberOfStudents += count;
+            double delta = grade - mean;
+            mean += delta * count / numberOfStudents;
+            squaredDeviations += delta * (grade - mean) * count;
+            grades[i] = grade;
+            cumulativeCounts[i] = numberOfStudents;
+            histogram[SchoolStatistics.bucketOf(grade)] += count;
+        }
+
+        List<GradeDistribution.Percentile> percentileGrades = new ArrayList<>(percentiles.length);
+        for (double percentile : percentiles)
+            percentileGrades.add(new GradeDistribution.Percentile(percentile, percentile(grades, cumulativeCounts, percentile)));
+        List<GradeDistribution.HistogramBucket> buckets = new ArrayList<>(histogram.length);
+        for (int i = 0; i < histogram.length; i++)
+            buckets.add(new GradeDistribution.HistogramBucket(i * 0.5, (i + 1) * 0.5, histogram[i]));
+
+        return new GradeDistribution(numberOfStudents, mean, percentile(grades, cumulativeCounts, 50),
+                Math.sqrt(squaredDeviations / numberOfStudents), grades[0], grades[grades.length - 1], percentileGrades, buckets);
+    }
+
+    // Linear interpolation between the two closest ranks (the same as Excel's PERCENTILE.INC)
+    static double percentile(double[] grades, long[] cumulativeCounts, double percentile) {
+        long numberOfStudents = cumulativeCounts[cumulativeCounts.length - 1];
+        double rank = percentile / 100 * (numberOfStudents - 1);
+        long lowerRank = (long) Math.floor(rank);
+        double lower = gradeAtRank(grades, cumulativeCounts, lowerRank);
+        if(rank == lowerRank)
+            return lower;
+        double upper = gradeAtRank(grades, cumulativeCounts, lowerRank + 1);
+        return lower + (rank - lowerRank) * (upper - lower);
+    }
+
+    // The grade of the student at this 0-based position if all students were sorted by grade
+    private static double gradeAtRank(double[] grades, long[] cumulativeCounts, long rank) {
+        int index = Arrays.binarySearch(cumulativeCounts, rank + 1);
+        return grades[index >= 0 ? index : -index - 1];
+    }
+}
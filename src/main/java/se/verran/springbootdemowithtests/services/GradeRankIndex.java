@@ -0,0 +1,141 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import se.verran.springbootdemowithtests.dto.StudentRank;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+// Every graded student ordered by grade, rebuilt from the database on startup and then kept up to date from
+// StudentChangeEvents like SchoolStatistics. Rank and position lookups are O(log n) and never query the database.
+// The grade per student is kept next to the treap, so a change always removes the entry that is really there.
+// Grade writes outside a transaction may arrive out of commit order, so the last version seen per student is kept as
+// well and older changes are skipped. Deleted students keep their entry, a late update must not bring them back.
+@Component
+public class GradeRankIndex {
+    private final StudentService studentService;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final GradeTreap treap = new GradeTreap();
+    private final Map<Integer, Double> grades = new HashMap<>();
+    private final Map<Integer, Long> versions = new HashMap<>();
+
+    @Autowired
+    public GradeRankIndex(StudentService studentService) {
+        this.studentService = studentService;
+    }
+
+    // Same caveat as SchoolStatistics.rebuild, writes committed while the cohort is read can be missed
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        GroupAssigner.Cohort cohort = studentService.getCohort();
+        Integer[] graded = IntStream.range(0, cohort.size())
+                .filter(i -> !Double.isNaN(cohort.grades()[i]))
+                .boxed()
+                .toArray(Integer[]::new);
+        Arrays.sort(graded, Comparator.comparingDouble((Integer i) -> -normalize(cohort.grades()[i])).thenComparingInt(i -> cohort.ids()[i]));
+        double[] sortedGrades = new double[graded.length];
+        int[] sortedIds = new int[graded.length];
+        for (int i = 0; i < graded.length; i++) {
+            sortedGrades[i] = normalize(cohort.grades()[graded[i]]);
+            sortedIds[i] = cohort.ids()[graded[i]];
+        }
+        lock.writeLock().lock();
+        try {
+            grades.clear();
+            for (int i = 0; i < sortedIds.length; i++)
+                grades.put(sortedIds[i], sortedGrades[i]);
+            treap.buildFromSorted(sortedGrades, sortedIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(StudentChangeEvent.UPDATE_DERIVED_DATA)
+    public void onStudentChange(StudentChangeEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (StudentChange change : event.changes()) {
+                if(isOutdated(change))
+                    continue;
+                Double currentGrade = grades.remove(change.studentId());
+                if(currentGrade != null)
+                    treap.remove(currentGrade, change.studentId());
+                if(change.type() != StudentChange.Type.DELETED && change.newGrade() != null) {
+                    double newGrade = normalize(change.newGrade());
+                    grades.put(change.studentId(), newGrade);
+                    treap.insert(newGrade, change.studentId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A delete carries the version it removed, so it still applies when the update that wrote that version came first
+    private boolean isOutdated(StudentChange change) {
+        if(change.version() == null)
+            return false;
+        Long lastVersion = versions.get(change.studentId());
+        if(lastVersion != null && (change.version() < lastVersion
+                || (change.version().equals(lastVersion) && change.type() != StudentChange.Type.DELETED)))
+            return true;
+        versions.put(change.studentId(), change.version());
+        return false;
+    }
+
+    // Empty when the student doesn't exist or has no grade
+    public Optional<StudentRank> rankOf(int studentId) {
+        lock.readLock().lock();
+        try {
+            Double grade = grades.get(studentId);
+            return grade == null ? Optional.empty() : Optional.of(rank(studentId, grade));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // position 1 is the best graded student, equal grades are ordered by id
+    public Optional<StudentRank> atPosition(long position) {
+        lock.readLock().lock();
+        try {
+            if(position < 1 || position > treap.size())
+                return Optional.empty();
+            double[] entry = treap.select((int) position - 1);
+            return Optional.of(rank((int) entry[1], entry[0]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return treap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private StudentRank rank(int studentId, double grade) {
+        int numberOfGradedStudents = treap.size();
+        return new StudentRank(studentId, grade, treap.countHigher(grade) + 1L, numberOfGradedStudents,
+                100.0 * treap.countLower(grade) / numberOfGradedStudents);
+    }
+
+    // -0.0 and 0.0 are the same grade
+    private static double normalize(double grade) {
+        return grade + 0.0;
+    }
+}
@@ -0,0 +1,197 @@
+package se.verran.springbootdemowithtests.services;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+
+// Order-statistics treap over (grade, studentId), highest grade first and lowest id first on equal grades.
+// Every node knows the size of its subtree, so insert, remove, rank and select are all O(log n) expected.
+// Not thread-safe, GradeRankIndex guards it.
+final class GradeTreap {
+
+    private static final class Node {
+        final double grade;
+        final int studentId;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(double grade, int studentId, int priority) {
+            this.grade = grade;
+            this.studentId = studentId;
+            this.priority = priority;
+        }
+    }
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    int size() {
+        return size(root);
+    }
+
+    void insert(double grade, int studentId) {
+        Node[] parts = split(root, grade, studentId);
+        root = merge(merge(parts[0], new Node(grade, studentId, random.nextInt())), parts[1]);
+    }
+
+    boolean remove(double grade, int studentId) {
+        Node[] lessAndRest = split(root, grade, studentId);
+        Node[] matchAndGreater = splitFirst(lessAndRest[1]);
+        boolean removed = matchAndGreater[0] != null
+                && matchAndGreater[0].studentId == studentId && matchAndGreater[0].grade == grade;
+        Node rest = removed ? matchAndGreater[1] : merge(matchAndGreater[0], matchAndGreater[1]);
+        root = merge(lessAndRest[0], rest);
+        return removed;
+    }
+
+    // Number of entries ordered before (grade, studentId), whether or not it is in the treap itself
+    int countBefore(double grade, int studentId) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if(compare(node.grade, node.studentId, grade, studentId) < 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    // Number of entries with a strictly higher grade
+    int countHigher(double grade) {
+        return countBefore(grade, Integer.MIN_VALUE);
+    }
+
+    // Number of entries with a strictly lower grade
+    int countLower(double grade) {
+        return size() - countBefore(grade, Integer.MAX_VALUE) - (contains(grade, Integer.MAX_VALUE) ? 1 : 0);
+    }
+
+    // The entry at this 0-based position, as {grade, studentId}
+    double[] select(int position) {
+        Node node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if(position < leftSize) {
+                node = node.left;
+            } else if(position == leftSize) {
+                return new double[]{node.grade, node.studentId};
+            } else {
+                position -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        throw new IndexOutOfBoundsException(position);
+    }
+
+    // Replaces the content in O(n), grades and studentIds have to be sorted in treap order already
+    void buildFromSorted(double[] grades, int[] studentIds) {
+        // Cartesian tree on random priorities: the right spine lives on a stack, a new node adopts whatever it outranks
+        Deque<Node> rightSpine = new ArrayDeque<>();
+        for (int i = 0; i < grades.length; i++) {
+            Node node = new Node(grades[i], studentIds[i], random.nextInt());
+            Node last = null;
+            while (!rightSpine.isEmpty() && rightSpine.peek().priority < node.priority)
+                last = rightSpine.pop();
+            node.left = last;
+            if(!rightSpine.isEmpty())
+                rightSpine.peek().right = node;
+            rightSpine.push(node);
+        }
+        root = rightSpine.peekLast();
+        updateSizes(root);
+    }
+
+    static int compare(double grade, int studentId, double otherGrade, int otherStudentId) {
+        int byGrade = Double.compare(otherGrade, grade);
+        return byGrade != 0 ? byGrade : Integer.compare(studentId, otherStudentId);
+    }
+
+    private boolean contains(double grade, int studentId) {
+        Node node = root;
+        while (node != null) {
+            int comparison = compare(grade, studentId, node.grade, node.studentId);
+            if(comparison == 0)
+                return true;
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    // {entries before (grade, studentId), entries from (grade, studentId) on}
+    private static Node[] split(Node node, double grade, int studentId) {
+        if(node == null)
+            return new Node[2];
+        if(compare(node.grade, node.studentId, grade, studentId) < 0) {
+            Node[] parts = split(node.right, grade, studentId);
+            node.right = parts[0];
+            update(node);
+            return new Node[]{node, parts[1]};
+        }
+        Node[] parts = split(node.left, grade, studentId);
+        node.left = parts[1];
+        update(node);
+        return new Node[]{parts[0], node};
+    }
+
+    // {first entry on its own, the rest}
+    private static Node[] splitFirst(Node node) {
+        if(node == null)
+            return new Node[2];
+        if(node.left == null) {
+            Node rest = node.right;
+            node.right = null;
+            update(node);
+            return new Node[]{node, rest};
+        }
+        Node[] parts = splitFirst(node.left);
+        node.left = parts[1];
+        update(node);
+        return new Node[]{parts[0], node};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if(left == null)
+            return right;
+        if(right == null)
+            return left;
+        if(left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static void updateSizes(Node node) {
+        // Iterative post-order, a degenerate spine could be deeper than the call stack allows
+        Deque<Node> stack = new ArrayDeque<>();
+        Deque<Node> order = new ArrayDeque<>();
+        if(node != null)
+            stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            order.push(current);
+            if(current.left != null)
+                stack.push(current.left);
+            if(current.right != null)
+                stack.push(current.right);
+        }
+        while (!order.isEmpty())
+            update(order.pop());
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,109 @@
+package se.verran.springbootdemowithtests.services;
+
+import se.verran.springbootdemowithtests.dto.StudentGroups;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+// Splits a cohort into groups whose sizes differ by at most one, the remainder is spread one student per group.
+// Works on parallel id/grade arrays, the order of students is decided once and every group is then filled
+// independently, so large cohorts are filled in parallel.
+public final class GroupAssigner {
+
+    // Above this many students the sort and the group filling run on the common fork-join pool
+    static final int PARALLEL_THRESHOLD = 10_000;
+
+    private GroupAssigner() {
+    }
+
+    // ids and grades are index aligned, an ungraded student has grade NaN
+    public record Cohort(int[] ids, double[] grades) {
+
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    // Shuffled with a seeded Fisher-Yates, the same cohort and seed always give the same groups
+    public static List<StudentGroups.Group> random(Cohort cohort, int numberOfGroups, long seed) {
+        int[] order = IntStream.range(0, cohort.size()).toArray();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        int baseSize = order.length / numberOfGroups;
+        int remainder = order.length % numberOfGroups;
+        return fill(cohort, numberOfGroups, group -> {
+            int size = baseSize + (group < remainder ? 1 : 0);
+            int start = group * baseSize + Math.min(group, remainder);
+            return Arrays.copyOfRange(order, start, start + size);
+        });
+    }
+
+    // Best grade first, dealt out like a snake draft (0, 1, .. n-1, n-1, .. 1, 0, 0, 1, ..) so every group gets
+    // a similar spread and average. Ungraded students come last and are spread the same way.
+    public static List<StudentGroups.Group> balanced(Cohort cohort, int numberOfGroups) {
+        int[] order = byGradeDescending(cohort.grades());
+        int rounds = (order.length + numberOfGroups - 1) / numberOfGroups;
+        return fill(cohort, numberOfGroups, group -> {
+            int[] members = new int[rounds];
+            int size = 0;
+            for (int round = 0; round < rounds; round++) {
+                int position = round * numberOfGroups + (round % 2 == 0 ? group : numberOfGroups - 1 - group);
+                if(position < order.length)
+                    members[size++] = order[position];
+            }
+            return size == rounds ? members : Arrays.copyOf(members, size);
+        });
+    }
+
+    // Grade and index packed into one long, so a primitive (parallel) sort orders by grade with index as tie-breaker.
+    // Grades are 0.0 - 5.0, float precision is plenty for ordering them.
+    static int[] byGradeDescending(double[] grades) {
+        long[] keys = new long[grades.length];
+        for (int i = 0; i < grades.length; i++) {
+            // + 0.0f turns -0.0 into 0.0, the bits of non-negative floats sort like the values
+            int descendingGrade = Double.isNaN(grades[i]) ? Integer.MAX_VALUE : Integer.MAX_VALUE - 1 - Float.floatToIntBits((float) grades[i] + 0.0f);
+            keys[i] = (long) descendingGrade << 32 | i;
+        }
+        if(keys.length >= PARALLEL_THRESHOLD)
+            Arrays.parallelSort(keys);
+        else
+            Arrays.sort(keys);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            order[i] = (int) keys[i];
+        return order;
+    }
+
+    private interface MemberSelector {
+        int[] membersOf(int group);
+    }
+
+    private static List<StudentGroups.Group> fill(Cohort cohort, int numberOfGroups, MemberSelector selector) {
+        IntStream groups = IntStream.range(0, numberOfGroups);
+        if(cohort.size() >= PARALLEL_THRESHOLD)
+            groups = groups.parallel();
+        return groups.mapToObj(group -> toGroup(cohort, group, selector.membersOf(group))).toList();
+    }
+
+    private static StudentGroups.Group toGroup(Cohort cohort, int group, int[] members) {
+        int[] studentIds = new int[members.length];
+        double gradeSum = 0.0;
+        int graded = 0;
+        for (int i = 0; i < members.length; i++) {
+            studentIds[i] = cohort.ids()[members[i]];
+            double grade = cohort.grades()[members[i]];
+            if(!Double.isNaN(grade)) {
+                gradeSum += grade;
+                graded++;
+            }
+        }
+        return new StudentGroups.Group(group + 1, members.length, graded == 0 ? null : gradeSum / graded, studentIds);
+    }
+}
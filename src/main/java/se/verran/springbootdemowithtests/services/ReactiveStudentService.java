@@ -0,0 +1,80 @@
+package se.verran.springbootdemowithtests.services;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.entities.Student;
+
+import java.time.LocalDate;
+
+// Read-only access to the student table over R2DBC, rows are emitted as the subscriber asks for them
+@Service
+public class ReactiveStudentService {
+    private static final String STUDENT_COLUMNS = "id, first_name, last_name, birth_date, email, java_programming_grade, version";
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public ReactiveStudentService(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<Student> getAllStudents() {
+        return databaseClient.sql("SELECT " + STUDENT_COLUMNS + " FROM student ORDER BY id")
+                .map(ReactiveStudentService::toStudent)
+                .all();
+    }
+
+    public Mono<Student> getStudentById(int id) {
+        return databaseClient.sql("SELECT " + STUDENT_COLUMNS + " FROM student WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveStudentService::toStudent)
+                .one()
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find student by id " + id)));
+    }
+
+    public Mono<Long> countStudents() {
+        return databaseClient.sql("SELECT COUNT(*) FROM student")
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    // Same rules as SchoolService.getTopScoringStudents(percent)
+    public Flux<StudentGrade> getTopScoringStudents(double percent) {
+        if(percent <= 0 || percent > 100)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Percent should be greater than 0 and at most 100");
+        return countStudents().flatMapMany(numberOfStudents -> {
+            if(numberOfStudents == 0)
+                return Flux.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No students found"));
+            int numberOfTopStudents = (int)Math.ceil(numberOfStudents * percent / 100);
+            return databaseClient.sql("SELECT id, first_name, last_name, java_programming_grade FROM student" +
+                            " WHERE java_programming_grade IS NOT NULL" +
+                            " ORDER BY java_programming_grade DESC, id ASC LIMIT :limit")
+                    .bind("limit", numberOfTopStudents)
+                    .map(row -> new StudentGrade(
+                            row.get("id", Integer.class),
+                            row.get("first_name", String.class),
+                            row.get("last_name", String.class),
+                            row.get("java_programming_grade", Double.class)))
+                    .all();
+        });
+    }
+
+    private static Student toStudent(Readable row) {
+        Student student = new Student(
+                row.get("first_name", String.class),
+                row.get("last_name", String.class),
+                row.get("birth_date", LocalDate.class),
+                row.get("email", String.class));
+        student.setId(row.get("id", Integer.class));
+        student.setJavaProgrammingGrade(row.get("java_programming_grade", Double.class));
+        student.setVersion(row.get("version", Long.class));
+        return student;
+    }
+}
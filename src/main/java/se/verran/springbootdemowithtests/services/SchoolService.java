@@ -1,34 +1,84 @@
 package se.verran.springbootdemowithtests.services;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.web.server.ResponseStatusException;
-import se.verran.springbootdemowithtests.entities.Student;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+import se.verran.springbootdemowithtests.dto.GradeDistribution;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.dto.StudentGroups;
+import se.verran.springbootdemowithtests.dto.StudentRank;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
+@Timed("school.service")
 public class SchoolService {
 
 
     private final StudentService studentService;
+    private final SchoolStatistics schoolStatistics;
+    private final GradeRankIndex gradeRankIndex;
+    // A dashboard refresh sends the same requests all at once, identical ones share a single trip to the database
+    private final SingleFlight<Double, List<StudentGrade>> topScoringStudents;
+    private final SingleFlight<String, List<GradeCount>> gradeCounts;
     @Autowired
-    public SchoolService(StudentService studentService) {
+    public SchoolService(StudentService studentService, SchoolStatistics schoolStatistics, GradeRankIndex gradeRankIndex, MeterRegistry meterRegistry,
+                         @Value("${school.single-flight.result-ttl:0s}") Duration resultTtl) {
         this.studentService = studentService;
+        this.schoolStatistics = schoolStatistics;
+        this.gradeRankIndex = gradeRankIndex;
+        this.topScoringStudents = new SingleFlight<>("topscoringstudents", resultTtl, meterRegistry);
+        this.gradeCounts = new SingleFlight<>("gradecounts", resultTtl, meterRegistry);
+    }
+
+    // Calls arriving after a committed write start a new computation instead of joining or reusing an older one
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(StudentChangeEvent.UPDATE_DERIVED_DATA)
+    public void onStudentChange(StudentChangeEvent event) {
+        topScoringStudents.invalidate();
+        gradeCounts.invalidate();
+    }
+
+    // Counts that only depend on graded/ungraded come from the statistics snapshot, birth year filters go to the database
+    public long countStudents(Boolean graded, Integer bornFromYear, Integer bornToYear) {
+        if(bornFromYear == null && bornToYear == null) {
+            SchoolStatistics.Snapshot statistics = schoolStatistics.getSnapshot();
+            if(graded == null)
+                return statistics.numberOfStudents();
+            return graded ? statistics.numberOfGradedStudents() : statistics.numberOfUngradedStudents();
+        }
+        if(bornFromYear != null && bornToYear != null && bornFromYear > bornToYear)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "bornFrom should not be after bornTo");
+        return studentService.countStudents(graded,
+                bornFromYear == null ? null : LocalDate.of(bornFromYear, 1, 1),
+                bornToYear == null ? null : LocalDate.of(bornToYear, 12, 31));
+    }
+
+    public SchoolStatistics.Snapshot getStatistics() {
+        return schoolStatistics.getSnapshot();
     }
 
     // How many groups I would like, don't know how many students
     public String numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(int numberOfGroups) {
-        int numberOfStudents = studentService.getAllStudents().size();
+        long numberOfStudents = studentService.countStudents();
         if(numberOfGroups < 2)
             return "There should be at least two groups";
         if(numberOfGroups > numberOfStudents)
             return String.format("Not able to divide %s students into %s groups", numberOfStudents, numberOfGroups);
-        int studentsPerGroup = numberOfStudents / numberOfGroups;
+        long studentsPerGroup = numberOfStudents / numberOfGroups;
         if(studentsPerGroup < 2)
             return String.format("Not able to manage %s groups with %s students", numberOfGroups, numberOfStudents);
-        int remainder = numberOfStudents % numberOfGroups;
+        long remainder = numberOfStudents % numberOfGroups;
         return String.format("%s groups could be formed with %s students per group%s",
                 numberOfGroups,
                 studentsPerGroup,
@@ -36,39 +86,89 @@ public class SchoolService {
     }
     // How many students per group I would like, don't know how many students and how many groups I end up with
     public String numberOfGroupsWhenDividedIntoGroupsOf(int studentsPerGroup){
-        int numberOfStudents = studentService.getAllStudents().size();
+        long numberOfStudents = studentService.countStudents();
         if(studentsPerGroup < 2)
             return "Size of group should be at least 2";
         if(numberOfStudents < studentsPerGroup || numberOfStudents / studentsPerGroup < 2)
             return String.format("Not able to manage groups of %s with only %s students", studentsPerGroup, numberOfStudents);
-        int numberOfGroups = numberOfStudents / studentsPerGroup;
-        int remainder = numberOfStudents % studentsPerGroup;
+        long numberOfGroups = numberOfStudents / studentsPerGroup;
+        long remainder = numberOfStudents % studentsPerGroup;
         return String.format("%s students per group is possible, there will be %s groups" +
                 (remainder == 0 ? "":", there will be " + remainder + " student" + (remainder == 1 ? "" : "s") + " hanging"),
                 studentsPerGroup, numberOfGroups,
                 (remainder == 0 ? "":String.format(", there will be %s student" + (remainder == 1 ? "" : "s") + " hanging", remainder)));
     }
 
+    // Concrete groups for the whole cohort, sized by either the number of groups or the number of students per group
+    public StudentGroups createGroups(String strategy, Integer numberOfGroups, Integer studentsPerGroup, Long seed) {
+        if(!"random".equals(strategy) && !"balanced".equals(strategy))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Strategy should be random or balanced");
+        if((numberOfGroups == null) == (studentsPerGroup == null))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Give either numberOfGroups or studentsPerGroup");
+        if(numberOfGroups != null && numberOfGroups < 2)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "There should be at least two groups");
+        if(studentsPerGroup != null && studentsPerGroup < 2)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size of group should be at least 2");
+        GroupAssigner.Cohort cohort = studentService.getCohort();
+        if(cohort.size() == 0)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No students found");
+        int groups = numberOfGroups != null ? numberOfGroups : cohort.size() / studentsPerGroup;
+        if(numberOfGroups != null && cohort.size() / numberOfGroups < 2)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Not able to manage %s groups with %s students", numberOfGroups, cohort.size()));
+        if(studentsPerGroup != null && groups < 2)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format("Not able to manage groups of %s with only %s students", studentsPerGroup, cohort.size()));
+        if("balanced".equals(strategy))
+            return new StudentGroups(strategy, null, cohort.size(), GroupAssigner.balanced(cohort, groups));
+        long randomSeed = seed != null ? seed : ThreadLocalRandom.current().nextLong();
+        return new StudentGroups(strategy, randomSeed, cohort.size(), GroupAssigner.random(cohort, groups, randomSeed));
+    }
+
     public String calculateAverageGrade() {
-        List<Student> studentList = studentService.getAllStudents();
-        if(studentList.isEmpty())
+        SchoolStatistics.Snapshot statistics = schoolStatistics.getSnapshot();
+        if(statistics.numberOfStudents() == 0)
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No students found");
-        double totalSum = 0.0;
-        for (Student student: studentList)
-            totalSum += student.getJavaProgrammingGrade();
-        double average = totalSum / studentList.size();
+        // The average is only meaningful when every student has a grade
+        if(statistics.numberOfUngradedStudents() > 0)
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Not all students have been graded");
+        double average = statistics.gradeSum() / statistics.numberOfGradedStudents();
         return String.format("Average grade is %.1f", average);
     }
 
-    public List<Student> getTopScoringStudents() {
-        List<Student> studentList = studentService.getAllStudents();
-        if(studentList.isEmpty())
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No students found");
-        List<Student> sortedStudentList = studentList
-                .stream()
-                .sorted((student1, student2)->Double.compare(student2.getJavaProgrammingGrade(), student1.getJavaProgrammingGrade()))
-                .toList();
-        int numberOfTopStudents = (int)Math.ceil(sortedStudentList.size()*0.2);
-        return sortedStudentList.subList(0, numberOfTopStudents);
+    // One GROUP BY grade query, the database walks the grade index and hands back a row per distinct grade
+    public GradeDistribution getGradeDistribution(double... percentiles) {
+        for (double percentile : percentiles) {
+            if(percentile < 0 || percentile > 100)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Percentiles should be between 0 and 100");
+        }
+        // The percentiles differ between callers, the grade counts don't
+        List<GradeCount> counts = gradeCounts.execute("all", studentService::countStudentsByGrade);
+        if(counts.isEmpty())
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No graded students found");
+        return GradeAnalyzer.analyze(counts, percentiles);
+    }
+
+    // Answered from the in-memory rank index, the database is not queried
+    public StudentRank getStudentRank(int studentId) {
+        return gradeRankIndex.rankOf(studentId).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find a graded student by id " + studentId));
+    }
+
+    public StudentRank getStudentAtPosition(long position) {
+        if(position < 1)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Position should be at least 1");
+        return gradeRankIndex.atPosition(position).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "No graded student at position " + position));
+    }
+
+    public List<StudentGrade> getTopScoringStudents() {
+        return getTopScoringStudents(20);
+    }
+
+    // Not transactional on purpose, the transaction starts inside the single flight. Only the caller running it holds
+    // a pooled connection, the ones waiting for the shared result don't.
+    public List<StudentGrade> getTopScoringStudents(double percent) {
+        if(percent <= 0 || percent > 100)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Percent should be greater than 0 and at most 100");
+        return topScoringStudents.execute(percent, () -> studentService.getTopScoringStudentsByPercent(percent));
     }
 }
@@ -0,0 +1,99 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+// Materialized school statistics, rebuilt from the database on startup and then kept up to date from StudentChangeEvents.
+// Readers only do a volatile read of an immutable Snapshot, writers swap in a new Snapshot with compare-and-set.
+@Component
+public class SchoolStatistics {
+
+    // Buckets of 0.5 over 0.0 - 5.0, a grade of 5.0 is counted in the last bucket
+    public static final int HISTOGRAM_BUCKETS = 10;
+
+    private final StudentService studentService;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+    @Autowired
+    public SchoolStatistics(StudentService studentService) {
+        this.studentService = studentService;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    // Writes committed while the rebuild queries run can be missed, which only matters if the app takes traffic before it is ready
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long numberOfStudents = studentService.countStudents();
+        long numberOfGradedStudents = 0;
+        double gradeSum = 0.0;
+        long[] gradeHistogram = new long[HISTOGRAM_BUCKETS];
+        for (GradeCount gradeCount : studentService.countStudentsByGrade()) {
+            numberOfGradedStudents += gradeCount.count();
+            gradeSum += gradeCount.grade() * gradeCount.count();
+            gradeHistogram[bucketOf(gradeCount.grade())] += gradeCount.count();
+        }
+        snapshot.set(new Snapshot(numberOfStudents, numberOfGradedStudents, gradeSum, gradeHistogram));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(StudentChangeEvent.UPDATE_DERIVED_DATA)
+    public void onStudentChange(StudentChangeEvent event) {
+        snapshot.updateAndGet(current -> current.apply(event));
+    }
+
+    static int bucketOf(double grade) {
+        return Math.min((int) (grade * 2), HISTOGRAM_BUCKETS - 1);
+    }
+
+    public record Snapshot(long numberOfStudents, long numberOfGradedStudents, double gradeSum, long[] gradeHistogram) {
+
+        static final Snapshot EMPTY = new Snapshot(0, 0, 0.0, new long[HISTOGRAM_BUCKETS]);
+
+        public Snapshot {
+            gradeHistogram = gradeHistogram.clone();
+        }
+
+        @Override
+        public long[] gradeHistogram() {
+            return gradeHistogram.clone();
+        }
+
+        public long numberOfUngradedStudents() {
+            return numberOfStudents - numberOfGradedStudents;
+        }
+
+        Snapshot apply(StudentChangeEvent event) {
+            long students = numberOfStudents;
+            long gradedStudents = numberOfGradedStudents;
+            double sum = gradeSum;
+            long[] histogram = gradeHistogram.clone();
+            for (StudentChange change : event.changes()) {
+                if(change.type() == StudentChange.Type.ADDED)
+                    students++;
+                if(change.type() == StudentChange.Type.DELETED)
+                    students--;
+                if(change.oldGrade() != null) {
+                    gradedStudents--;
+                    sum -= change.oldGrade();
+                    histogram[bucketOf(change.oldGrade())]--;
+                }
+                if(change.newGrade() != null) {
+                    gradedStudents++;
+                    sum += change.newGrade();
+                    histogram[bucketOf(change.newGrade())]++;
+                }
+            }
+            return new Snapshot(students, gradedStudents, sum, histogram);
+        }
+    }
+}
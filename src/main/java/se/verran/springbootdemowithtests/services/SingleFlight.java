@@ -0,0 +1,94 @@
+package se.verran.springbootdemowithtests.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Concurrent calls with the same key share one execution, the first caller runs it and the others wait for its result
+// (or its exception). With a result TTL a finished result is also handed to calls arriving shortly after, invalidate()
+// drops everything so calls after a write never get a result that was started before it.
+// Counted in school.single.flight.calls, tagged executed, collapsed (joined a running call) or reused (got a kept result)
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final long resultTtlNanos;
+    private final Counter executed;
+    private final Counter collapsed;
+    private final Counter reused;
+
+    public SingleFlight(String name, Duration resultTtl, MeterRegistry meterRegistry) {
+        this.resultTtlNanos = resultTtl.toNanos();
+        this.executed = counter(meterRegistry, name, "executed");
+        this.collapsed = counter(meterRegistry, name, "collapsed");
+        this.reused = counter(meterRegistry, name, "reused");
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String name, String result) {
+        return Counter.builder("school.single.flight.calls")
+                .description("Calls to coalesced school computations")
+                .tag("name", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public V execute(K key, Supplier<V> supplier) {
+        while (true) {
+            Flight<V> flight = new Flight<>();
+            Flight<V> current = flights.putIfAbsent(key, flight);
+            if(current == null)
+                return run(key, flight, supplier);
+            if(!current.result.isDone()) {
+                collapsed.increment();
+                return await(current);
+            }
+            if(System.nanoTime() - current.finishedAt < resultTtlNanos) {
+                reused.increment();
+                return await(current);
+            }
+            flights.remove(key, current);
+        }
+    }
+
+    public void invalidate() {
+        flights.clear();
+    }
+
+    private V run(K key, Flight<V> flight, Supplier<V> supplier) {
+        executed.increment();
+        try {
+            V value = supplier.get();
+            flight.finishedAt = System.nanoTime();
+            if(resultTtlNanos <= 0)
+                flights.remove(key, flight);
+            flight.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            // Failures are never kept, the next call tries again
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <V> V await(Flight<V> flight) {
+        try {
+            return flight.result.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if(e.getCause() instanceof Error cause)
+                throw cause;
+            throw e;
+        }
+    }
+
+    private static final class Flight<V> {
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        // Written before the result is completed, so it is visible to everyone who sees the result as done
+        volatile long finishedAt;
+    }
+}
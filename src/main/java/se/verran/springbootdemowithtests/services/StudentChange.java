@@ -0,0 +1,24 @@
+package se.verran.springbootdemowithtests.services;
+
+import se.verran.springbootdemowithtests.entities.Student;
+
+// What a single write did to a student, old and new grade are null when the student had none (or didn't exist).
+// version is the student's version after the write (the deleted version for a delete), null when it isn't known.
+// Writes outside a transaction can reach the listeners in a different order than they committed, the version tells
+// which one is the latest.
+public record StudentChange(Type type, int studentId, Double oldGrade, Double newGrade, Long version) {
+
+    public enum Type { ADDED, UPDATED, DELETED }
+
+    public static StudentChange added(Student student) {
+        return new StudentChange(Type.ADDED, student.getId(), null, student.getJavaProgrammingGrade(), student.getVersion());
+    }
+
+    public static StudentChange updated(int studentId, Double oldGrade, Double newGrade, Long version) {
+        return new StudentChange(Type.UPDATED, studentId, oldGrade, newGrade, version);
+    }
+
+    public static StudentChange deleted(Student student) {
+        return new StudentChange(Type.DELETED, student.getId(), student.getJavaProgrammingGrade(), null, student.getVersion());
+    }
+}
@@ -0,0 +1,17 @@
+package se.verran.springbootdemowithtests.services;
+
+import java.util.List;
+
+// Published by StudentService after every write, listeners use @TransactionalEventListener so rolled back writes are never seen
+public record StudentChangeEvent(List<StudentChange> changes) {
+
+    // Every listener has an explicit @Order. Data derived from the students (snapshots, indexes, kept results) is
+    // updated first, the version that tells clients to refetch is bumped last. The other way around a request could
+    // pair the new ETag with the old data and get 304s on it until the next write.
+    public static final int UPDATE_DERIVED_DATA = 0;
+    public static final int BUMP_VERSION = 100;
+
+    public StudentChangeEvent(StudentChange change) {
+        this(List.of(change));
+    }
+}
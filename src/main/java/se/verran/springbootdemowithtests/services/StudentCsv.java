@@ -0,0 +1,130 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.dto.StudentResponse;
+import se.verran.springbootdemowithtests.entities.Student;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+// RFC 4180 rows: firstName,lastName,birthDate,email[,javaProgrammingGrade]. Values with a comma, quote or line break
+// are quoted, quotes inside them doubled.
+// Spreadsheets run a cell starting with = + - @ as a formula, format puts a ' in front of such text and parse takes it
+// off again. Text already starting with ' gets one as well, so the escaping stays reversible.
+public final class StudentCsv {
+
+    public static final String HEADER = "firstName,lastName,birthDate,email,javaProgrammingGrade";
+    private static final String ESCAPED_PREFIXES = "=+-@'";
+
+    private record Row(int lineNumber, List<String> columns) {
+    }
+
+    private StudentCsv() {
+    }
+
+    public static List<Student> parse(String csv) {
+        List<Student> students = new ArrayList<>();
+        List<Row> rows = rows(csv);
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            if((row.columns().size() == 1 && row.columns().get(0).isBlank()) || (i == 0 && row.columns().get(0).strip().startsWith("firstName")))
+                continue;
+            students.add(parseRow(row));
+        }
+        return students;
+    }
+
+    // The same columns parse reads, so an export can be imported again
+    public static String format(StudentResponse student) {
+        return text(student.firstName()) + ','
+                + text(student.lastName()) + ','
+                + (student.birthDate() == null ? "" : student.birthDate().toString()) + ','
+                + text(student.email()) + ','
+                + (student.javaProgrammingGrade() == null ? "" : student.javaProgrammingGrade().toString());
+    }
+
+    // Splits into rows and columns, a quoted value may span lines. The line number is where the row starts.
+    // Lenient like before: a quote only opens a quoted value at the start of a column, elsewhere it is kept as it is
+    private static List<Row> rows(String csv) {
+        List<Row> rows = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        int lineNumber = 1;
+        int rowLineNumber = 1;
+        for (int i = 0; i < csv.length(); i++) {
+            char c = csv.charAt(i);
+            if(quoted) {
+                if(c == '"' && i + 1 < csv.length() && csv.charAt(i + 1) == '"') {
+                    column.append('"');
+                    i++;
+                } else if(c == '"') {
+                    quoted = false;
+                } else {
+                    if(c == '\n')
+                        lineNumber++;
+                    column.append(c);
+                }
+            } else if(c == '"' && column.toString().isBlank()) {
+                column.setLength(0);
+                quoted = true;
+            } else if(c == ',') {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else if(c == '\n') {
+                columns.add(column.toString());
+                column.setLength(0);
+                rows.add(new Row(rowLineNumber, columns));
+                columns = new ArrayList<>();
+                rowLineNumber = ++lineNumber;
+            } else if(c != '\r') {
+                column.append(c);
+            }
+        }
+        if(quoted)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unterminated quoted value on line " + rowLineNumber);
+        columns.add(column.toString());
+        rows.add(new Row(rowLineNumber, columns));
+        return rows;
+    }
+
+    private static Student parseRow(Row row) {
+        List<String> columns = row.columns();
+        if(columns.size() < 4 || columns.size() > 5)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected 4 or 5 columns on line " + row.lineNumber());
+        try {
+            Student student = new Student(
+                    parseText(columns.get(0)),
+                    parseText(columns.get(1)),
+                    columns.get(2).isBlank() ? null : LocalDate.parse(columns.get(2).strip()),
+                    parseText(columns.get(3)));
+            if(columns.size() == 5 && !columns.get(4).isBlank())
+                student.setJavaProgrammingGrade(Double.parseDouble(columns.get(4).strip()));
+            return student;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid value on line " + row.lineNumber());
+        }
+    }
+
+    private static String parseText(String value) {
+        String stripped = value.strip();
+        if(stripped.isEmpty())
+            return null;
+        if(stripped.length() > 1 && stripped.charAt(0) == '\'' && ESCAPED_PREFIXES.indexOf(stripped.charAt(1)) >= 0)
+            return stripped.substring(1);
+        return stripped;
+    }
+
+    private static String text(String value) {
+        if(value == null || value.isEmpty())
+            return "";
+        if(ESCAPED_PREFIXES.indexOf(value.charAt(0)) >= 0)
+            value = "'" + value;
+        if(value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)
+            return '"' + value.replace("\"", "\"\"") + '"';
+        return value;
+    }
+}
@@ -0,0 +1,37 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Version of the student data as a whole, bumped after every committed write. Read endpoints hand it out as ETag
+// so unchanged data is answered with 304 without touching the database. There is no Last-Modified, HTTP dates only
+// have whole seconds and two writes within one second would answer If-Modified-Since with 304 for changed data.
+// Assumes this application is the only writer, a restart starts a new generation so old ETags never match.
+@Component
+public class StudentDataVersion {
+    private final AtomicReference<Version> version = new AtomicReference<>(
+            new Version(UUID.randomUUID().toString().substring(0, 8), 0));
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(StudentChangeEvent.BUMP_VERSION)
+    public void onStudentChange(StudentChangeEvent event) {
+        version.updateAndGet(current -> new Version(current.generation(), current.number() + 1));
+    }
+
+    // Read this before the data, a write in between then only costs the client one extra full response
+    public Version current() {
+        return version.get();
+    }
+
+    public record Version(String generation, long number) {
+
+        // Weak, the same data is sent as JSON, CBOR or Smile, gzipped or not, and Tomcat won't compress strong ETags
+        public String eTag() {
+            return "W/\"" + generation + "-" + number + "\"";
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.dto.ExportJobStatus;
+import se.verran.springbootdemowithtests.dto.ExportJobStatus.State;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+// Writes the whole roster to a CSV file in the background, rows go from the database cursor straight to disk.
+// At most max-concurrent exports run at once on their own threads, a few more may wait, anything beyond that
+// is turned away so exports never take request threads or more than a couple of pooled connections.
+// Jobs only live in memory, finished files are removed after the retention time. Expired jobs are swept on every call
+// into the service rather than on a schedule, the map is small and nothing has to run while nobody asks.
+@Service
+public class StudentExportService implements DisposableBean {
+    private final StudentService studentService;
+    private final Path directory;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StudentExportService(StudentService studentService,
+                                @Value("${student.export.directory:${java.io.tmpdir}/student-exports}") Path directory,
+                                @Value("${student.export.max-concurrent:2}") int maxConcurrent,
+                                @Value("${student.export.queue-capacity:10}") int queueCapacity,
+                                @Value("${student.export.retention:1h}") Duration retention) {
+        this.studentService = studentService;
+        this.directory = directory;
+        this.retention = retention;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "student-export-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public ExportJobStatus startExport(boolean gzip) {
+        removeExpiredJobs();
+        String id = UUID.randomUUID().toString();
+        ExportJob job = new ExportJob(id, gzip, directory.resolve(fileName(id, gzip)));
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> export(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many exports in progress, try again later");
+        }
+        return job.status();
+    }
+
+    public ExportJobStatus getStatus(String id) {
+        return getJob(id).status();
+    }
+
+    public List<ExportJobStatus> getAllStatuses() {
+        removeExpiredJobs();
+        return jobs.values().stream().map(ExportJob::status).toList();
+    }
+
+    // The finished file, for the download endpoint
+    public Path getFile(String id) {
+        ExportJob job = getJob(id);
+        State state = job.status().state();
+        if(state != State.DONE)
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Export " + id + " is " + state.name().toLowerCase());
+        return job.file;
+    }
+
+    public String getFileName(String id) {
+        return getJob(id).file.getFileName().toString();
+    }
+
+    private static String fileName(String id, boolean gzip) {
+        return "students-" + id + (gzip ? ".csv.gz" : ".csv");
+    }
+
+    private ExportJob getJob(String id) {
+        removeExpiredJobs();
+        ExportJob job = jobs.get(id);
+        if(job == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find export by id " + id);
+        return job;
+    }
+
+    private void export(ExportJob job) {
+        job.start();
+        Path partFile = job.file.resolveSibling(job.file.getFileName() + ".part");
+        try {
+            Files.createDirectories(directory);
+            try (OutputStream out = job.gzip ? new GZIPOutputStream(Files.newOutputStream(partFile), 64 * 1024) : Files.newOutputStream(partFile);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024)) {
+                writer.write(StudentCsv.HEADER);
+                writer.newLine();
+                studentService.forEachStudent(student -> {
+                    try {
+                        writer.write(StudentCsv.format(student));
+                        writer.newLine();
+                        job.rows++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            // Renamed only when complete, a download never sees half a file
+            Files.move(partFile, job.file, StandardCopyOption.REPLACE_EXISTING);
+            job.finish(State.DONE, null);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(partFile);
+            job.finish(State.FAILED, e.getMessage());
+        }
+    }
+
+    private void removeExpiredJobs() {
+        Instant expired = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            Instant finishedAt = job.status().finishedAt();
+            if(finishedAt == null || finishedAt.isAfter(expired))
+                return false;
+            deleteQuietly(job.file);
+            return true;
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Left for the next cleanup of the temp directory
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    // Written by the export thread, read by request threads. Every state change replaces the whole status, so a reader
+    // never sees a finish time without its final state and error
+    private static final class ExportJob {
+        final String id;
+        final boolean gzip;
+        final Path file;
+        final AtomicReference<ExportJobStatus> status;
+        // Progress while running, counted outside the status so a row doesn't cost a new one
+        volatile long rows;
+
+        ExportJob(String id, boolean gzip, Path file) {
+            this.id = id;
+            this.gzip = gzip;
+            this.file = file;
+            this.status = new AtomicReference<>(new ExportJobStatus(id, State.QUEUED, gzip, 0, Instant.now(), null, null));
+        }
+
+        void start() {
+            status.updateAndGet(queued -> new ExportJobStatus(id, State.RUNNING, gzip, 0, queued.createdAt(), null, null));
+        }
+
+        void finish(State state, String error) {
+            status.updateAndGet(running -> new ExportJobStatus(id, state, gzip, rows, running.createdAt(), Instant.now(), error));
+        }
+
+        ExportJobStatus status() {
+            ExportJobStatus current = status.get();
+            if(current.state() != State.RUNNING)
+                return current;
+            return new ExportJobStatus(id, State.RUNNING, gzip, rows, current.createdAt(), null, null);
+        }
+    }
+}
@@ -1,64 +1,473 @@
 package se.verran.springbootdemowithtests.services;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.config.CacheConfig;
+import se.verran.springbootdemowithtests.dto.BulkImportResult;
+import se.verran.springbootdemowithtests.dto.GradeAssignment;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+import se.verran.springbootdemowithtests.dto.GradeResult;
+import se.verran.springbootdemowithtests.dto.ImportConflict;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.dto.StudentIdGrade;
+import se.verran.springbootdemowithtests.dto.StudentPage;
+import se.verran.springbootdemowithtests.dto.StudentResponse;
+import se.verran.springbootdemowithtests.dto.StudentSearchFilter;
+import se.verran.springbootdemowithtests.dto.StudentSearchResult;
+import se.verran.springbootdemowithtests.dto.StudentView;
 import se.verran.springbootdemowithtests.entities.Student;
 import se.verran.springbootdemowithtests.repositories.StudentRepository;
+import se.verran.springbootdemowithtests.repositories.StudentSpecifications;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed("student.service")
 public class StudentService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final Set<String> SEARCH_SORT_PROPERTIES = Set.of("id", "firstName", "lastName", "birthDate", "email", "javaProgrammingGrade");
+    // A grade update or delete that keeps losing the race against other writers gives up after this many reads,
+    // between attempts it waits a random 0 - 2^attempt ms so the competing writers spread out
+    private static final int MAX_VERSIONED_WRITE_ATTEMPTS = 8;
+
     private final StudentRepository studentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // For stores that can't do ORDER BY ... LIMIT efficiently, select the top students in memory instead
+    private final boolean topScoringInMemory;
+    // Same value as hibernate.jdbc.batch_size, one flush per batch
+    private final int batchSize;
 
     @Autowired
-    public StudentService(StudentRepository studentRepository) {
+    public StudentService(StudentRepository studentRepository, ApplicationEventPublisher eventPublisher,
+                          @Value("${school.top-scoring.in-memory:false}") boolean topScoringInMemory,
+                          @Value("${student.batch-size:500}") int batchSize) {
         this.studentRepository = studentRepository;
+        this.eventPublisher = eventPublisher;
+        if(batchSize < 1)
+            throw new IllegalArgumentException("student.batch-size should be at least 1, was " + batchSize);
+        this.topScoringInMemory = topScoringInMemory;
+        this.batchSize = batchSize;
     }
 
+    // The unique email constraint decides, a separate exists check would race with concurrent inserts
     public Student addStudent(Student student){
-        boolean emailAlreadyExists = studentRepository.existsStudentByEmail(student.getEmail());
-        if(emailAlreadyExists){
+        asNewStudent(student);
+        Student savedStudent;
+        try {
+            savedStudent = studentRepository.save(student);
+        } catch (DataIntegrityViolationException e) {
+            if(!isEmailConflict(e))
+                throw e;
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Email " + student.getEmail() + " already exists");
         }
-        return studentRepository.save(student);
+        eventPublisher.publishEvent(new StudentChangeEvent(StudentChange.added(savedStudent)));
+        return savedStudent;
+    }
+
+    // Responses carry id and version, a body posted back with them would make save() merge into the existing row
+    private static void asNewStudent(Student student){
+        student.setId(0);
+        student.setVersion(null);
+    }
+
+    private static boolean isEmailConflict(DataIntegrityViolationException e){
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase().contains(Student.EMAIL_CONSTRAINT);
     }
-    public List<Student> getAllStudents(){
-        return studentRepository.findAll();
+    // Imports valid students in JDBC batches, rows that can't be imported are reported instead of failing the whole import
+    @Transactional
+    public BulkImportResult addStudents(List<Student> students){
+        List<ImportConflict> conflicts = new ArrayList<>();
+        Set<String> importedEmails = new HashSet<>();
+        int imported = 0;
+        for (int from = 0; from < students.size(); from += batchSize) {
+            List<Student> batch = students.subList(from, Math.min(from + batchSize, students.size()));
+            // The unique index compares emails case-insensitively (MySQL's default collation), so the checks do too
+            Set<String> existingEmails = studentRepository.findExistingEmails(batch.stream()
+                            .map(Student::getEmail)
+                            .filter(Objects::nonNull)
+                            .toList())
+                    .stream()
+                    .map(StudentService::normalizeEmail)
+                    .collect(Collectors.toSet());
+            List<Student> studentsToSave = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                Student student = batch.get(i);
+                String conflict = findImportConflict(student, existingEmails, importedEmails);
+                if(conflict != null) {
+                    conflicts.add(new ImportConflict(from + i + 1, student.getEmail(), conflict));
+                    continue;
+                }
+                asNewStudent(student);
+                studentsToSave.add(student);
+            }
+            studentRepository.saveAll(studentsToSave);
+            eventPublisher.publishEvent(new StudentChangeEvent(studentsToSave.stream().map(StudentChange::added).toList()));
+            entityManager.flush();
+            entityManager.clear();
+            imported += studentsToSave.size();
+        }
+        return new BulkImportResult(imported, conflicts);
+    }
+
+    private String findImportConflict(Student student, Set<String> existingEmails, Set<String> importedEmails){
+        if(student.getFirstName() == null || student.getLastName() == null || student.getBirthDate() == null || student.getEmail() == null)
+            return "First name, last name, birth date and email are required";
+        // Too long for the column would fail the batch insert and roll back the whole import
+        if(student.getFirstName().length() > Student.NAME_LENGTH || student.getLastName().length() > Student.NAME_LENGTH)
+            return "First and last name can be at most " + Student.NAME_LENGTH + " characters";
+        if(student.getEmail().length() > Student.EMAIL_LENGTH)
+            return "Email can be at most " + Student.EMAIL_LENGTH + " characters";
+        Double grade = student.getJavaProgrammingGrade();
+        if(grade != null && (!Double.isFinite(grade) || grade < 0 || grade > 5))
+            return "Valid grades are 0.0 - 5.0";
+        String email = normalizeEmail(student.getEmail());
+        if(existingEmails.contains(email))
+            return "Email " + student.getEmail() + " already exists";
+        if(!importedEmails.add(email))
+            return "Email " + student.getEmail() + " appears more than once";
+        return null;
+    }
+
+    private static String normalizeEmail(String email){
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    // Listings for the API are read as StudentView projections, the age is based on one LocalDate.now() per call
+    @Transactional(readOnly = true)
+    public List<StudentResponse> getAllStudentResponses(){
+        LocalDate today = LocalDate.now();
+        return studentRepository.findAllViewsByOrderByIdAsc().stream()
+                .map(student -> StudentResponse.from(student, today))
+                .toList();
     }
 
+    @Transactional(readOnly = true)
+    public StudentPage getStudentsAfterId(int afterId, int pageSize){
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size should be 1 - " + MAX_PAGE_SIZE);
+        LocalDate today = LocalDate.now();
+        List<StudentResponse> students = studentRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize)).stream()
+                .map(student -> StudentResponse.from(student, today))
+                .toList();
+        Integer nextAfterId = students.size() < pageSize ? null : students.get(students.size() - 1).id();
+        return new StudentPage(students, nextAfterId);
+    }
+
+    // Hands every student to the action one at a time, projections aren't kept by the persistence context
+    @Transactional(readOnly = true)
+    public void forEachStudent(Consumer<StudentResponse> action){
+        LocalDate today = LocalDate.now();
+        try (Stream<StudentView> students = studentRepository.streamAllByOrderByIdAsc()) {
+            students.forEach(student -> action.accept(StudentResponse.from(student, today)));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long countStudents(){
+        return studentRepository.count();
+    }
+
+    // Null filters are left out, so countStudents(null, null, null) counts everyone
+    @Transactional(readOnly = true)
+    public long countStudents(Boolean graded, LocalDate bornOnOrAfter, LocalDate bornOnOrBefore){
+        List<Specification<Student>> filters = new ArrayList<>();
+        if(graded != null)
+            filters.add(StudentSpecifications.isGraded(graded));
+        if(bornOnOrAfter != null)
+            filters.add(StudentSpecifications.bornOnOrAfter(bornOnOrAfter));
+        if(bornOnOrBefore != null)
+            filters.add(StudentSpecifications.bornOnOrBefore(bornOnOrBefore));
+        return studentRepository.count(Specification.allOf(filters));
+    }
+
+    // Offset paging without a total count. With no sort given, a name prefix sorts by that name so the database reads
+    // the matches in index order and stops after one page.
+    @Transactional(readOnly = true)
+    public StudentSearchResult searchStudents(StudentSearchFilter filter, Pageable pageable){
+        if(pageable.getPageSize() > MAX_PAGE_SIZE)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Size should be at most " + MAX_PAGE_SIZE);
+        for (Sort.Order order : pageable.getSort()) {
+            if(!SEARCH_SORT_PROPERTIES.contains(order.getProperty()))
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot sort by " + order.getProperty());
+        }
+        List<Specification<Student>> filters = new ArrayList<>();
+        if(hasText(filter.firstName()))
+            filters.add(StudentSpecifications.firstNameStartsWith(filter.firstName().strip()));
+        if(hasText(filter.lastName()))
+            filters.add(StudentSpecifications.lastNameStartsWith(filter.lastName().strip()));
+        if(hasText(filter.email()))
+            filters.add(StudentSpecifications.hasEmail(filter.email().strip()));
+        if(filter.bornFrom() != null)
+            filters.add(StudentSpecifications.bornOnOrAfter(filter.bornFrom()));
+        if(filter.bornTo() != null)
+            filters.add(StudentSpecifications.bornOnOrBefore(filter.bornTo()));
+        if(filter.minGrade() != null)
+            filters.add(StudentSpecifications.gradeAtLeast(filter.minGrade()));
+        if(filter.maxGrade() != null)
+            filters.add(StudentSpecifications.gradeAtMost(filter.maxGrade()));
+
+        Sort sort = pageable.getSort();
+        if(sort.isUnsorted() && hasText(filter.lastName()))
+            sort = Sort.by("lastName");
+        else if(sort.isUnsorted() && hasText(filter.firstName()))
+            sort = Sort.by("firstName");
+        // id last, so rows with equal sort values keep the same order from page to page
+        Sort stableSort = sort.and(Sort.by("id"));
+        // Selected straight into StudentView like the other listings, no entities are loaded
+        Window<StudentView> window = studentRepository.findViewsBy(Specification.allOf(filters), stableSort, pageable.getOffset(), pageable.getPageSize());
+        LocalDate today = LocalDate.now();
+        List<StudentResponse> students = window.getContent().stream()
+                .map(student -> StudentResponse.from(student, today))
+                .toList();
+        return new StudentSearchResult(students, pageable.getPageNumber(), pageable.getPageSize(), window.hasNext());
+    }
+
+    private static boolean hasText(String value){
+        return value != null && !value.isBlank();
+    }
+
+    // Every student as two primitive arrays in id order, no entities or boxed values are kept
+    @Transactional(readOnly = true)
+    public GroupAssigner.Cohort getCohort(){
+        int[] ids = new int[1024];
+        double[] grades = new double[1024];
+        int size = 0;
+        try (Stream<StudentIdGrade> students = studentRepository.streamIdGradesByOrderByIdAsc()) {
+            for (Iterator<StudentIdGrade> iterator = students.iterator(); iterator.hasNext(); size++) {
+                StudentIdGrade student = iterator.next();
+                if(size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    grades = Arrays.copyOf(grades, size * 2);
+                }
+                ids[size] = student.id();
+                grades[size] = student.javaProgrammingGrade() == null ? Double.NaN : student.javaProgrammingGrade();
+            }
+        }
+        return new GroupAssigner.Cohort(Arrays.copyOf(ids, size), Arrays.copyOf(grades, size));
+    }
+
+    @Transactional(readOnly = true)
+    public List<GradeCount> countStudentsByGrade(){
+        return studentRepository.countStudentsByGrade();
+    }
+
+    @Transactional(readOnly = true)
+    public List<StudentGrade> getTopScoringStudents(int numberOfStudents){
+        if(!topScoringInMemory)
+            return studentRepository.findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc(Limit.of(numberOfStudents));
+        try (Stream<StudentGrade> students = studentRepository.streamByJavaProgrammingGradeIsNotNull()) {
+            return TopScoringSelector.select(students, numberOfStudents);
+        }
+    }
+
+    // The count and the top-N query share one read-only transaction and so one pooled connection
+    @Transactional(readOnly = true)
+    public List<StudentGrade> getTopScoringStudentsByPercent(double percent){
+        long numberOfStudents = countStudents();
+        if(numberOfStudents == 0)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No students found");
+        return getTopScoringStudents((int)Math.ceil(numberOfStudents * percent / 100));
+    }
+
+    // Deletes the version that was read, like setGradeForStudentById, so the deleted event carries the grade that was
+    // actually removed. A concurrent grade change makes the attempt miss and the student is read again.
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, key = "#id")
     public void deleteStudent(int id){
-        if(!studentRepository.existsById(id)){
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find and delete student by id " + id);
+        for (int attempt = 1; attempt <= MAX_VERSIONED_WRITE_ATTEMPTS; attempt++) {
+            Student student = studentRepository.findById(id).orElseThrow(() ->
+                    new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find and delete student by id " + id)
+            );
+            if(studentRepository.deleteIfVersionMatches(id, student.getVersion()) == 1) {
+                eventPublisher.publishEvent(new StudentChangeEvent(StudentChange.deleted(student)));
+                return;
+            }
+            entityManager.detach(student);
+            backOff(attempt);
         }
-        studentRepository.deleteById(id);
+        throw updateConflict(id);
     }
+    // The request is applied to the stored student, the version it was based on (if sent) has to be the current one
+    // and the flush fails if another writer commits in between. Both cases are a 409 instead of a lost update.
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, key = "#student.id")
     public Student updateStudent(Student student){
-        if(!studentRepository.existsById(student.getId())){
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find and update student by id " + student.getId());
+        Student storedStudent = studentRepository.findById(student.getId()).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find and update student by id " + student.getId())
+        );
+        if(student.getVersion() != null && !student.getVersion().equals(storedStudent.getVersion()))
+            throw updateConflict(student.getId());
+        Double oldGrade = storedStudent.getJavaProgrammingGrade();
+        storedStudent.setFirstName(student.getFirstName());
+        storedStudent.setLastName(student.getLastName());
+        storedStudent.setBirthDate(student.getBirthDate());
+        storedStudent.setEmail(student.getEmail());
+        storedStudent.setJavaProgrammingGrade(student.getJavaProgrammingGrade());
+        Student savedStudent;
+        try {
+            savedStudent = studentRepository.save(storedStudent);
+            studentRepository.flush();
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw updateConflict(student.getId());
+        } catch (DataIntegrityViolationException e) {
+            if(!isEmailConflict(e))
+                throw e;
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Email " + student.getEmail() + " already exists");
         }
-        return studentRepository.save(student);
+        eventPublisher.publishEvent(new StudentChangeEvent(StudentChange.updated(student.getId(), oldGrade, savedStudent.getJavaProgrammingGrade(), savedStudent.getVersion())));
+        return savedStudent;
     }
 
+    private static ResponseStatusException updateConflict(int studentId){
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Student by id " + studentId + " was changed by someone else, reload it and try again");
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.STUDENTS_CACHE, key = "#id")
     public Student getStudentById(int id) {
         return studentRepository.findById(id).orElseThrow(()->new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find student by id " + id));
     }
 
+    // One conditional UPDATE per attempt, no locks are held between reading the old grade and writing the new one.
+    // Deliberately not @Transactional, every retry has to read the latest committed version.
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, key = "#studentId")
     public Student setGradeForStudentById(int studentId, String gradeAsString) {
+        double grade = parseGrade(gradeAsString);
+        for (int attempt = 1; attempt <= MAX_VERSIONED_WRITE_ATTEMPTS; attempt++) {
+            Student student = studentRepository.findById(studentId).orElseThrow(() ->
+                    new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find and update grades for student by id " + studentId)
+            );
+            Double oldGrade = student.getJavaProgrammingGrade();
+            long version = student.getVersion();
+            if(studentRepository.updateGradeIfVersionMatches(studentId, grade, version) == 1) {
+                student.setJavaProgrammingGrade(grade);
+                student.setVersion(version + 1);
+                eventPublisher.publishEvent(new StudentChangeEvent(StudentChange.updated(studentId, oldGrade, grade, version + 1)));
+                return student;
+            }
+            // With open-in-view the persistence context outlives the attempt, the next findById has to go to the database
+            entityManager.detach(student);
+            backOff(attempt);
+        }
+        throw updateConflict(studentId);
+    }
+
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1L << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while retrying the update");
+        }
+    }
+
+    // Validates every grade first, then loads and updates the students a batch at a time in one transaction
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS_CACHE, allEntries = true)
+    public List<GradeResult> setGradesForStudents(List<GradeAssignment> gradeAssignments) {
+        GradeResult[] results = new GradeResult[gradeAssignments.size()];
+        List<StudentChange> changes = new ArrayList<>();
+        Double[] grades = new Double[gradeAssignments.size()];
+        for (int i = 0; i < gradeAssignments.size(); i++) {
+            GradeAssignment gradeAssignment = gradeAssignments.get(i);
+            try {
+                grades[i] = parseGrade(gradeAssignment.grade());
+            } catch (ResponseStatusException e) {
+                results[i] = new GradeResult(gradeAssignment.studentId(), gradeAssignment.grade(), HttpStatus.NOT_ACCEPTABLE, e.getReason());
+            }
+        }
+        for (int from = 0; from < gradeAssignments.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, gradeAssignments.size());
+            List<Integer> studentIds = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++)
+                if(grades[i] != null)
+                    studentIds.add(gradeAssignments.get(i).studentId());
+            Map<Integer, Student> students = studentRepository.findAllById(studentIds).stream()
+                    .collect(Collectors.toMap(Student::getId, Function.identity()));
+            Map<Integer, Double> oldGrades = new LinkedHashMap<>();
+            for (int i = from; i < to; i++) {
+                if(grades[i] == null)
+                    continue;
+                GradeAssignment gradeAssignment = gradeAssignments.get(i);
+                Student student = students.get(gradeAssignment.studentId());
+                if(student == null) {
+                    results[i] = new GradeResult(gradeAssignment.studentId(), gradeAssignment.grade(), HttpStatus.NOT_FOUND,
+                            "Could not find and update grades for student by id " + gradeAssignment.studentId());
+                    continue;
+                }
+                oldGrades.putIfAbsent(student.getId(), student.getJavaProgrammingGrade());
+                student.setJavaProgrammingGrade(grades[i]);
+                results[i] = new GradeResult(gradeAssignment.studentId(), gradeAssignment.grade(), HttpStatus.OK, null);
+            }
+            // Dirty students are written as one JDBC batch of versioned UPDATE statements,
+            // a student changed by someone else since findAllById rolls back the whole call
+            try {
+                entityManager.flush();
+            } catch (OptimisticLockException e) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Some of the students were changed by someone else, no grades were saved, try again");
+            }
+            // After the flush, so every change carries the version its UPDATE wrote
+            // A grade set to what it already was isn't written and isn't a change
+            oldGrades.forEach((studentId, oldGrade) -> {
+                Student student = students.get(studentId);
+                if(!Objects.equals(oldGrade, student.getJavaProgrammingGrade()))
+                    changes.add(StudentChange.updated(studentId, oldGrade, student.getJavaProgrammingGrade(), student.getVersion()));
+            });
+            entityManager.clear();
+        }
+        // Every event bumps the data version, nothing changed must not invalidate anyone's ETag
+        if(!changes.isEmpty())
+            eventPublisher.publishEvent(new StudentChangeEvent(changes));
+        return List.of(results);
+    }
+
+    private static double parseGrade(String gradeAsString) {
         double grade;
         try {
             grade = Double.parseDouble(gradeAsString);
         } catch (Exception e){
             throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Valid grades are 0.0 - 5.0");
         }
-        if(grade < 0 || grade > 5)
+        // NaN and infinity fail neither comparison, but would poison every running grade sum
+        if(!Double.isFinite(grade) || grade < 0 || grade > 5)
             throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Valid grades are 0.0 - 5.0");
-        Student student = studentRepository.findById(studentId).orElseThrow(() ->
-                new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find and update grades for student by id " + studentId)
-        );
-        student.setJavaProgrammingGrade(grade);
-        return studentRepository.save(student);
+        return grade;
     }
 }
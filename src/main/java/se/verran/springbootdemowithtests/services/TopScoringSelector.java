@@ -0,0 +1,37 @@
+package se.verran.springbootdemowithtests.services;
+
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+// Keeps the best n students in a bounded min-heap, so a full scan never holds more than n rows at a time
+public final class TopScoringSelector {
+
+    // Highest grade first, lowest id first on equal grades, same order as the database query
+    static final Comparator<StudentGrade> HIGHEST_GRADE_FIRST = Comparator
+            .comparingDouble(StudentGrade::javaProgrammingGrade)
+            .reversed()
+            .thenComparingInt(StudentGrade::id);
+
+    private TopScoringSelector() {
+    }
+
+    public static List<StudentGrade> select(Stream<StudentGrade> students, int numberOfStudents) {
+        if(numberOfStudents <= 0)
+            return List.of();
+        PriorityQueue<StudentGrade> heap = new PriorityQueue<>(numberOfStudents + 1, HIGHEST_GRADE_FIRST.reversed());
+        students.filter(student -> student.javaProgrammingGrade() != null)
+                .forEach(student -> {
+                    heap.offer(student);
+                    if(heap.size() > numberOfStudents)
+                        heap.poll();
+                });
+        List<StudentGrade> topStudents = new ArrayList<>(heap);
+        topStudents.sort(HIGHEST_GRADE_FIRST);
+        return topStudents;
+    }
+}
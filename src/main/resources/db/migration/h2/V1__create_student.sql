@@ -0,0 +1,12 @@
+-- Same schema as mysql/V1, used by the in-memory test database
+CREATE SEQUENCE student_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE student (
+    birth_date DATE NOT NULL,
+    id INTEGER NOT NULL,
+    java_programming_grade FLOAT(53),
+    email VARCHAR(50) NOT NULL,
+    first_name VARCHAR(50) NOT NULL,
+    last_name VARCHAR(50) NOT NULL,
+    PRIMARY KEY (id)
+);
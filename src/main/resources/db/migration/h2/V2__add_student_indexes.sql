@@ -0,0 +1,3 @@
+ALTER TABLE student ADD CONSTRAINT uk_student_email UNIQUE (email);
+
+CREATE INDEX idx_student_grade ON student (java_programming_grade DESC, id);
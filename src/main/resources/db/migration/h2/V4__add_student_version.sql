@@ -0,0 +1,2 @@
+-- Optimistic locking column, existing students start at version 0
+ALTER TABLE student ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,3 @@
+CREATE INDEX idx_student_first_name ON student (first_name);
+CREATE INDEX idx_student_last_name ON student (last_name);
+CREATE INDEX idx_student_birth_date ON student (birth_date);
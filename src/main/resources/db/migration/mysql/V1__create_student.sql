@@ -0,0 +1,17 @@
+-- The student table as Hibernate created it with ddl-auto=update, ids come from the pooled student_seq
+CREATE TABLE student (
+    birth_date DATE NOT NULL,
+    id INTEGER NOT NULL,
+    java_programming_grade FLOAT(53),
+    email VARCHAR(50) NOT NULL,
+    first_name VARCHAR(50) NOT NULL,
+    last_name VARCHAR(50) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+-- MySQL has no sequences, Hibernate keeps the next value in a one-row table
+CREATE TABLE student_seq (
+    next_val BIGINT
+) ENGINE=InnoDB;
+
+INSERT INTO student_seq VALUES (1);
@@ -0,0 +1,5 @@
+-- Fails on duplicate emails, find them with:
+--   SELECT email, COUNT(*) FROM student GROUP BY email HAVING COUNT(*) > 1;
+ALTER TABLE student
+    ADD CONSTRAINT uk_student_email UNIQUE (email),
+    ADD INDEX idx_student_grade (java_programming_grade DESC, id);
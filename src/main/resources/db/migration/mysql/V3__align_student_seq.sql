@@ -0,0 +1,13 @@
+-- Baselined schemas may predate student_seq (ids used to be AUTO_INCREMENT) or have it seeded at 1.
+-- Hibernate's pooled optimizer hands out the 50 ids below next_val, so keep next_val above MAX(id) + 50.
+CREATE TABLE IF NOT EXISTS student_seq (
+    next_val BIGINT
+) ENGINE=InnoDB;
+
+INSERT INTO student_seq (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM student_seq);
+
+UPDATE student_seq
+SET next_val = (SELECT MAX(id) + 51 FROM student)
+WHERE EXISTS (SELECT * FROM student)
+  AND next_val <= (SELECT MAX(id) + 50 FROM student);
@@ -0,0 +1,6 @@
+-- Name prefix search (LIKE 'abc%') is a range scan on these. InnoDB keeps the id in every secondary index entry,
+-- so ORDER BY last_name, id LIMIT n reads the matching rows in index order and stops after n.
+ALTER TABLE student
+    ADD INDEX idx_student_first_name (first_name),
+    ADD INDEX idx_student_last_name (last_name),
+    ADD INDEX idx_student_birth_date (birth_date);
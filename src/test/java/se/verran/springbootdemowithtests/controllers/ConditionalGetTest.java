@@ -0,0 +1,77 @@
+package se.verran.springbootdemowithtests.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import se.verran.springbootdemowithtests.services.StudentDataVersion;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConditionalGetTest {
+    StudentDataVersion studentDataVersion;
+    MockHttpServletRequest request;
+    MockHttpServletResponse response;
+    Supplier<String> mockBody;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        studentDataVersion = mock(StudentDataVersion.class);
+        when(studentDataVersion.current()).thenReturn(new StudentDataVersion.Version("abc", 7));
+        request = new MockHttpServletRequest("GET", "/edu/api/v1/school/averagegrade");
+        response = new MockHttpServletResponse();
+        mockBody = mock(Supplier.class);
+        when(mockBody.get()).thenReturn("Average grade is 3.0");
+    }
+
+    @Test
+    void ifModified_WhenNoConditionalHeaders_ShouldReturnBodyWithETag() {
+        ResponseEntity<String> entity = ConditionalGet.ifModified(studentDataVersion, new ServletWebRequest(request, response), mockBody);
+
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        assertEquals("Average grade is 3.0", entity.getBody());
+        assertEquals("W/\"abc-7\"", response.getHeader("ETag"));
+        assertEquals("no-cache", entity.getHeaders().getCacheControl());
+        assertEquals(List.of("Accept"), entity.getHeaders().getVary());
+    }
+
+    @Test
+    void ifModified_WhenETagMatches_ShouldReturnNotModifiedWithoutComputingBody() {
+        request.addHeader("If-None-Match", "W/\"abc-7\"");
+
+        ResponseEntity<String> entity = ConditionalGet.ifModified(studentDataVersion, new ServletWebRequest(request, response), mockBody);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, entity.getStatusCode());
+        // A 304 has to carry the same Vary as the 200 it stands in for
+        assertEquals(List.of("Accept"), entity.getHeaders().getVary());
+        verifyNoInteractions(mockBody);
+    }
+
+    @Test
+    void ifModified_WhenETagIsFromOlderVersion_ShouldReturnBody() {
+        request.addHeader("If-None-Match", "W/\"abc-6\"");
+
+        ResponseEntity<String> entity = ConditionalGet.ifModified(studentDataVersion, new ServletWebRequest(request, response), mockBody);
+
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        verify(mockBody).get();
+    }
+
+    @Test
+    void ifModified_WhenOnlyIfModifiedSinceIsSent_ShouldReturnBodyWithoutLastModified() {
+        request.addHeader("If-Modified-Since", System.currentTimeMillis());
+
+        ResponseEntity<String> entity = ConditionalGet.ifModified(studentDataVersion, new ServletWebRequest(request, response), mockBody);
+
+        assertEquals(HttpStatus.OK, entity.getStatusCode());
+        assertNull(response.getHeader("Last-Modified"));
+    }
+}
@@ -0,0 +1,54 @@
+package se.verran.springbootdemowithtests.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.sql.SQLTransientConnectionException;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class DatabaseUnavailableHandlerTest {
+    MockMvc mockMvc;
+
+    @RestController
+    static class PoolExhaustedController {
+
+        @GetMapping("/transaction")
+        String transaction() {
+            throw new CannotCreateTransactionException("Could not open JPA EntityManager for transaction",
+                    new SQLTransientConnectionException("HikariPool-1 - Connection is not available, request timed out after 2000ms."));
+        }
+
+        @GetMapping("/connection")
+        String connection() throws SQLTransientConnectionException {
+            throw new SQLTransientConnectionException("HikariPool-1 - Connection is not available, request timed out after 2000ms.");
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new PoolExhaustedController())
+                .setControllerAdvice(new DatabaseUnavailableHandler())
+                .build();
+    }
+
+    @Test
+    void handleNoConnection_WhenTransactionCannotBeCreated_ShouldRespondServiceUnavailable() throws Exception {
+        mockMvc.perform(get("/transaction"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void handleNoConnection_WhenPoolTimesOut_ShouldRespondServiceUnavailable() throws Exception {
+        mockMvc.perform(get("/connection"))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
@@ -4,10 +4,22 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.annotation.DirtiesContext;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.dto.StudentIdGrade;
+import se.verran.springbootdemowithtests.dto.StudentView;
 import se.verran.springbootdemowithtests.entities.Student;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,11 +30,15 @@ class StudentRepositoryTest {
     @Autowired
     StudentRepository studentRepository;
 
+    @Autowired
+    TestEntityManager testEntityManager;
+
     @BeforeEach
     void setUp() {
         Student student1 = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
         Student student2 = new Student("Kevin", "Andersson", LocalDate.of(1994, 7, 26), "kevinandersson@gmail.com");
 
+        student1.setJavaProgrammingGrade(2.5);
         studentRepository.save(student1);
         studentRepository.save(student2);
     }
@@ -39,4 +55,162 @@ class StudentRepositoryTest {
         assertFalse(studentRepository.existsStudentByEmail("false@mail.com"));
     }
 
-}
\ No newline at end of file
+    @Test
+    void saveAndFlush_WhenEmailAlreadyExists_ShouldViolateUniqueEmailConstraint() {
+        Student duplicate = new Student("Malin", "Nilsson", LocalDate.of(1996, 1, 1), "malinolsson@gmail.com");
+
+        DataIntegrityViolationException exception = assertThrows(DataIntegrityViolationException.class,
+                () -> studentRepository.saveAndFlush(duplicate));
+        assertTrue(exception.getMostSpecificCause().getMessage().toLowerCase().contains(Student.EMAIL_CONSTRAINT));
+    }
+
+    @Test
+    void updateGradeIfVersionMatches_WhenVersionIsCurrent_ShouldUpdateGradeAndBumpVersion() {
+        Student student = studentRepository.findAll().get(0);
+        long version = student.getVersion();
+
+        assertEquals(1, studentRepository.updateGradeIfVersionMatches(student.getId(), 4.0, version));
+        testEntityManager.clear(); // the bulk UPDATE bypasses the persistence context
+        Student updatedStudent = studentRepository.findById(student.getId()).orElseThrow();
+        assertEquals(4.0, updatedStudent.getJavaProgrammingGrade());
+        assertEquals(version + 1, updatedStudent.getVersion());
+    }
+
+    @Test
+    void updateGradeIfVersionMatches_WhenVersionIsOutdated_ShouldNotUpdate() {
+        Student student = studentRepository.findAll().get(0);
+        studentRepository.updateGradeIfVersionMatches(student.getId(), 4.0, student.getVersion());
+
+        assertEquals(0, studentRepository.updateGradeIfVersionMatches(student.getId(), 1.0, student.getVersion()));
+    }
+
+    @Test
+    void deleteIfVersionMatches_WhenVersionIsCurrent_ShouldDelete() {
+        Student student = studentRepository.findAll().get(0);
+
+        assertEquals(1, studentRepository.deleteIfVersionMatches(student.getId(), student.getVersion()));
+        assertFalse(studentRepository.existsById(student.getId()));
+    }
+
+    @Test
+    void deleteIfVersionMatches_WhenVersionIsOutdated_ShouldNotDelete() {
+        Student student = studentRepository.findAll().get(0);
+        studentRepository.updateGradeIfVersionMatches(student.getId(), 4.0, student.getVersion());
+
+        assertEquals(0, studentRepository.deleteIfVersionMatches(student.getId(), student.getVersion()));
+        assertTrue(studentRepository.existsById(student.getId()));
+    }
+
+    @Test
+    void findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc_WhenLimitIsOne_ShouldReturnTheBestGradedStudent() {
+        Student student3 = new Student("Lisa", "Svan", LocalDate.of(2004, 2, 23), "lisasvan@gmail.com");
+        student3.setJavaProgrammingGrade(4.5);
+        studentRepository.save(student3);
+
+        List<StudentGrade> topStudents = studentRepository.findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc(Limit.of(1));
+        assertEquals(1, topStudents.size());
+        assertEquals("Lisa", topStudents.get(0).firstName());
+    }
+
+    @Test
+    void streamByJavaProgrammingGradeIsNotNull_WhenOneStudentIsGraded_ShouldStreamOneStudent() {
+        try (Stream<StudentGrade> students = studentRepository.streamByJavaProgrammingGradeIsNotNull()) {
+            assertEquals(1, students.count());
+        }
+    }
+
+    @Test
+    void findByIdGreaterThanOrderByIdAsc_WhenStartingAfterFirstStudent_ShouldReturnSecondStudent() {
+        int firstId = studentRepository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(1)).get(0).id();
+        List<StudentView> nextPage = studentRepository.findByIdGreaterThanOrderByIdAsc(firstId, Limit.of(10));
+        assertEquals(1, nextPage.size());
+        assertEquals("Kevin", nextPage.get(0).firstName());
+    }
+
+    @Test
+    void findAllViewsByOrderByIdAsc_WhenTwoStudentsExist_ShouldReturnBothWithAllColumns() {
+        List<StudentView> students = studentRepository.findAllViewsByOrderByIdAsc();
+        assertEquals(2, students.size());
+        assertEquals("malinolsson@gmail.com", students.get(0).email());
+        assertEquals(LocalDate.of(1995, 6, 21), students.get(0).birthDate());
+        assertEquals(2.5, students.get(0).javaProgrammingGrade());
+        assertNull(students.get(1).javaProgrammingGrade());
+    }
+
+    @Test
+    void streamAllByOrderByIdAsc_WhenTwoStudentsExist_ShouldStreamBothInIdOrder() {
+        try (Stream<StudentView> students = studentRepository.streamAllByOrderByIdAsc()) {
+            assertEquals(List.of("Malin", "Kevin"), students.map(StudentView::firstName).toList());
+        }
+    }
+
+    @Test
+    void findExistingEmails_WhenOneOfTwoEmailsExists_ShouldReturnOnlyThatEmail() {
+        assertEquals(Set.of("malinolsson@gmail.com"), studentRepository.findExistingEmails(List.of("malinolsson@gmail.com", "false@mail.com")));
+    }
+
+    @Test
+    void count_WhenFilteringOnGradedStudentsBornIn1995_ShouldReturnOne() {
+        long count = studentRepository.count(Specification.allOf(
+                StudentSpecifications.isGraded(true),
+                StudentSpecifications.bornOnOrAfter(LocalDate.of(1995, 1, 1)),
+                StudentSpecifications.bornOnOrBefore(LocalDate.of(1995, 12, 31))));
+        assertEquals(1, count);
+    }
+
+    @Test
+    void count_WhenFilteringOnUngradedStudents_ShouldReturnOne() {
+        assertEquals(1, studentRepository.count(StudentSpecifications.isGraded(false)));
+    }
+
+    @Test
+    void count_WhenFilteringOnNamePrefix_ShouldOnlyMatchTheStartOfThatName() {
+        assertEquals(1, studentRepository.count(StudentSpecifications.firstNameStartsWith("Mal")));
+        assertEquals(1, studentRepository.count(StudentSpecifications.lastNameStartsWith("Anders")));
+        assertEquals(0, studentRepository.count(StudentSpecifications.firstNameStartsWith("alin")));
+        assertEquals(0, studentRepository.count(StudentSpecifications.lastNameStartsWith("Mal")));
+    }
+
+    @Test
+    void count_WhenNamePrefixContainsLikeWildcards_ShouldMatchThemLiterally() {
+        studentRepository.save(new Student("50%_off", "Sale", LocalDate.of(2000, 1, 1), "sale@gmail.com"));
+
+        assertEquals(1, studentRepository.count(StudentSpecifications.firstNameStartsWith("50%_")));
+        assertEquals(0, studentRepository.count(StudentSpecifications.firstNameStartsWith("%")));
+        assertEquals(0, studentRepository.count(StudentSpecifications.firstNameStartsWith("_")));
+    }
+
+    @Test
+    void count_WhenFilteringOnGradeRangeAndEmail_ShouldReturnOne() {
+        assertEquals(1, studentRepository.count(Specification.allOf(
+                StudentSpecifications.gradeAtLeast(2.0),
+                StudentSpecifications.gradeAtMost(3.0),
+                StudentSpecifications.hasEmail("malinolsson@gmail.com"))));
+    }
+
+    @Test
+    void findViewsBy_WhenGivenOffsetAndLimit_ShouldReturnThoseSortedRowsAndWhetherMoreFollow() {
+        for (int i = 0; i < 3; i++)
+            studentRepository.save(new Student("Anna" + i, "Berg", LocalDate.of(2000, 1, 1), "anna" + i + "@gmail.com"));
+
+        Window<StudentView> firstPage = studentRepository.findViewsBy(StudentSpecifications.lastNameStartsWith("Berg"),
+                Sort.by(Sort.Direction.DESC, "firstName"), 0, 2);
+        Window<StudentView> secondPage = studentRepository.findViewsBy(StudentSpecifications.lastNameStartsWith("Berg"),
+                Sort.by(Sort.Direction.DESC, "firstName"), 2, 2);
+
+        assertEquals(List.of("Anna2", "Anna1"), firstPage.stream().map(StudentView::firstName).toList());
+        assertTrue(firstPage.hasNext());
+        assertEquals(List.of("Anna0"), secondPage.stream().map(StudentView::firstName).toList());
+        assertFalse(secondPage.hasNext());
+    }
+
+    @Test
+    void streamIdGradesByOrderByIdAsc_ShouldReturnIdAndGradeOfEveryStudent() {
+        try (Stream<StudentIdGrade> students = studentRepository.streamIdGradesByOrderByIdAsc()) {
+            List<StudentIdGrade> idGrades = students.toList();
+            assertEquals(2, idGrades.size());
+            assertEquals(2.5, idGrades.get(0).javaProgrammingGrade());
+            assertNull(idGrades.get(1).javaProgrammingGrade());
+        }
+    }
+}
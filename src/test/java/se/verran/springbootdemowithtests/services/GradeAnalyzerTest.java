@@ -0,0 +1,82 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.Test;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+import se.verran.springbootdemowithtests.dto.GradeDistribution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradeAnalyzerTest {
+
+    @Test
+    void analyze_WhenGradesAreOneTwoThreeFour_ShouldInterpolateMedianAndReturnPopulationStandardDeviation() {
+        GradeDistribution distribution = GradeAnalyzer.analyze(List.of(
+                new GradeCount(4.0, 1), new GradeCount(1.0, 1), new GradeCount(3.0, 1), new GradeCount(2.0, 1)));
+
+        assertEquals(4, distribution.numberOfGradedStudents());
+        assertEquals(2.5, distribution.mean(), 1e-9);
+        assertEquals(2.5, distribution.median(), 1e-9);
+        assertEquals(Math.sqrt(1.25), distribution.standardDeviation(), 1e-9);
+        assertEquals(1.0, distribution.min());
+        assertEquals(4.0, distribution.max());
+    }
+
+    @Test
+    void analyze_WhenGradeIsSharedByManyStudents_ShouldTreatEachStudentAsOneValue() {
+        GradeDistribution distribution = GradeAnalyzer.analyze(List.of(new GradeCount(2.5, 2), new GradeCount(5.0, 1)), 0, 50, 100);
+
+        assertEquals(2.5, distribution.percentiles().get(0).grade());
+        assertEquals(2.5, distribution.percentiles().get(1).grade());
+        assertEquals(5.0, distribution.percentiles().get(2).grade());
+        assertEquals(10.0 / 3, distribution.mean(), 1e-9);
+    }
+
+    @Test
+    void analyze_WhenGradeIsFive_ShouldCountItInLastHistogramBucket() {
+        GradeDistribution distribution = GradeAnalyzer.analyze(List.of(new GradeCount(0.0, 3), new GradeCount(5.0, 2)));
+
+        assertEquals(10, distribution.histogram().size());
+        assertEquals(3, distribution.histogram().get(0).count());
+        assertEquals(2, distribution.histogram().get(9).count());
+        assertEquals(5.0, distribution.histogram().get(9).to());
+    }
+
+    @Test
+    void analyze_WhenRandomGrades_ShouldMatchStatisticsComputedFromEveryStudent() {
+        SplittableRandom random = new SplittableRandom(7);
+        double[] allGrades = new double[10_001];
+        Map<Double, Long> counts = new HashMap<>();
+        for (int i = 0; i < allGrades.length; i++) {
+            allGrades[i] = random.nextInt(51) / 10.0;
+            counts.merge(allGrades[i], 1L, Long::sum);
+        }
+        List<GradeCount> gradeCounts = new ArrayList<>();
+        counts.forEach((grade, count) -> gradeCounts.add(new GradeCount(grade, count)));
+
+        GradeDistribution distribution = GradeAnalyzer.analyze(gradeCounts, 10, 33.3, 90);
+
+        Arrays.sort(allGrades);
+        double mean = Arrays.stream(allGrades).average().orElseThrow();
+        double variance = Arrays.stream(allGrades).map(grade -> (grade - mean) * (grade - mean)).sum() / allGrades.length;
+        assertEquals(mean, distribution.mean(), 1e-9);
+        assertEquals(Math.sqrt(variance), distribution.standardDeviation(), 1e-9);
+        assertEquals(allGrades[5000], distribution.median());
+        assertEquals(allGrades[1000], distribution.percentiles().get(0).grade(), 1e-9);
+        double rank = 0.333 * 10_000;
+        int lower = (int) rank;
+        assertEquals(allGrades[lower] + (rank - lower) * (allGrades[lower + 1] - allGrades[lower]), distribution.percentiles().get(1).grade(), 1e-9);
+        assertEquals(allGrades[9000], distribution.percentiles().get(2).grade(), 1e-9);
+    }
+
+    @Test
+    void analyze_WhenNoGrades_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> GradeAnalyzer.analyze(List.of()));
+    }
+}
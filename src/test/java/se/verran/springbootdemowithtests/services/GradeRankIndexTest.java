@@ -0,0 +1,110 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.verran.springbootdemowithtests.dto.StudentRank;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GradeRankIndexTest {
+    GradeRankIndex gradeRankIndex;
+    StudentService mockStudentService;
+
+    @BeforeEach
+    void setUp() {
+        mockStudentService = mock(StudentService.class);
+        gradeRankIndex = new GradeRankIndex(mockStudentService);
+
+        when(mockStudentService.getCohort()).thenReturn(new GroupAssigner.Cohort(
+                new int[]{1, 2, 3, 4, 5},
+                new double[]{2.5, Double.NaN, 4.5, 4.5, 1.0}));
+        gradeRankIndex.rebuild();
+    }
+
+    @Test
+    void rebuild_ShouldOnlyRankGradedStudents() {
+        assertEquals(4, gradeRankIndex.size());
+        assertTrue(gradeRankIndex.rankOf(2).isEmpty());
+    }
+
+    @Test
+    void rankOf_WhenTwoStudentsShareTheBestGrade_ShouldGiveBothRankOne() {
+        assertEquals(new StudentRank(3, 4.5, 1, 4, 50.0), gradeRankIndex.rankOf(3).orElseThrow());
+        assertEquals(new StudentRank(4, 4.5, 1, 4, 50.0), gradeRankIndex.rankOf(4).orElseThrow());
+        assertEquals(new StudentRank(1, 2.5, 3, 4, 25.0), gradeRankIndex.rankOf(1).orElseThrow());
+        assertEquals(new StudentRank(5, 1.0, 4, 4, 0.0), gradeRankIndex.rankOf(5).orElseThrow());
+    }
+
+    @Test
+    void atPosition_ShouldOrderEqualGradesById() {
+        assertEquals(3, gradeRankIndex.atPosition(1).orElseThrow().studentId());
+        assertEquals(4, gradeRankIndex.atPosition(2).orElseThrow().studentId());
+        assertEquals(5, gradeRankIndex.atPosition(4).orElseThrow().studentId());
+        assertTrue(gradeRankIndex.atPosition(5).isEmpty());
+        assertTrue(gradeRankIndex.atPosition(0).isEmpty());
+    }
+
+    @Test
+    void onStudentChange_WhenGradeIsSet_ShouldMoveStudent() {
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(StudentChange.updated(5, 1.0, 5.0, 1L)));
+
+        assertEquals(1, gradeRankIndex.rankOf(5).orElseThrow().rank());
+        assertEquals(2, gradeRankIndex.rankOf(3).orElseThrow().rank());
+        assertEquals(4, gradeRankIndex.size());
+    }
+
+    @Test
+    void onStudentChange_WhenUngradedStudentGetsGrade_ShouldAddStudent() {
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(StudentChange.updated(2, null, 3.0, 1L)));
+
+        assertEquals(3, gradeRankIndex.rankOf(2).orElseThrow().rank());
+        assertEquals(5, gradeRankIndex.size());
+    }
+
+    @Test
+    void onStudentChange_WhenStudentIsDeleted_ShouldRemoveStudent() {
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(new StudentChange(StudentChange.Type.DELETED, 3, 4.5, null, 1L)));
+
+        assertTrue(gradeRankIndex.rankOf(3).isEmpty());
+        assertEquals(1, gradeRankIndex.rankOf(4).orElseThrow().rank());
+        assertEquals(3, gradeRankIndex.size());
+    }
+
+    @Test
+    void onStudentChange_WhenEventHasAStaleOldGrade_ShouldStillRemoveTheCurrentEntry() {
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, 3.0, 4.0, 1L)));
+
+        assertEquals(4.0, gradeRankIndex.rankOf(1).orElseThrow().grade());
+        assertEquals(4, gradeRankIndex.size());
+    }
+
+    @Test
+    void onStudentChange_WhenTwoUpdatesArriveOutOfOrder_ShouldKeepTheNewerGrade() {
+        // Committed as version 2 (grade 3.0) then version 3 (grade 5.0), delivered the other way around
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, 3.0, 5.0, 3L)));
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, 2.5, 3.0, 2L)));
+
+        assertEquals(5.0, gradeRankIndex.rankOf(1).orElseThrow().grade());
+        assertEquals(1, gradeRankIndex.rankOf(1).orElseThrow().rank());
+        assertEquals(4, gradeRankIndex.size());
+    }
+
+    @Test
+    void onStudentChange_WhenAnUpdateArrivesAfterTheDelete_ShouldNotBringTheStudentBack() {
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(new StudentChange(StudentChange.Type.DELETED, 1, 3.0, null, 2L)));
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, 2.5, 3.0, 2L)));
+
+        assertTrue(gradeRankIndex.rankOf(1).isEmpty());
+        assertEquals(3, gradeRankIndex.size());
+    }
+
+    @Test
+    void onStudentChange_WhenTheDeleteArrivesAfterTheUpdateItDeleted_ShouldRemoveTheStudent() {
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, 2.5, 3.0, 2L)));
+        gradeRankIndex.onStudentChange(new StudentChangeEvent(new StudentChange(StudentChange.Type.DELETED, 1, 3.0, null, 2L)));
+
+        assertTrue(gradeRankIndex.rankOf(1).isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradeTreapTest {
+
+    record Entry(double grade, int studentId) {
+    }
+
+    static final Comparator<Entry> TREAP_ORDER = (entry, other) -> GradeTreap.compare(entry.grade(), entry.studentId(), other.grade(), other.studentId());
+
+    static void assertSameAs(List<Entry> expected, GradeTreap treap) {
+        List<Entry> sorted = new ArrayList<>(expected);
+        sorted.sort(TREAP_ORDER);
+        assertEquals(sorted.size(), treap.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            double[] selected = treap.select(i);
+            assertEquals(sorted.get(i), new Entry(selected[0], (int) selected[1]));
+            assertEquals(i, treap.countBefore(sorted.get(i).grade(), sorted.get(i).studentId()));
+        }
+    }
+
+    @Test
+    void select_ShouldOrderByHighestGradeFirstAndLowestIdOnEqualGrades() {
+        GradeTreap treap = new GradeTreap();
+        treap.insert(3.0, 2);
+        treap.insert(4.5, 3);
+        treap.insert(3.0, 1);
+
+        assertArrayEquals(new double[]{4.5, 3}, treap.select(0));
+        assertArrayEquals(new double[]{3.0, 1}, treap.select(1));
+        assertArrayEquals(new double[]{3.0, 2}, treap.select(2));
+        assertEquals(1, treap.countHigher(3.0));
+        assertEquals(2, treap.countLower(4.5));
+    }
+
+    @Test
+    void remove_WhenEntryIsMissing_ShouldLeaveTreapUnchanged() {
+        GradeTreap treap = new GradeTreap();
+        treap.insert(3.0, 1);
+        treap.insert(4.0, 2);
+
+        assertFalse(treap.remove(3.0, 2));
+        assertFalse(treap.remove(2.0, 1));
+
+        assertSameAs(List.of(new Entry(3.0, 1), new Entry(4.0, 2)), treap);
+    }
+
+    @Test
+    void insertAndRemove_WhenRandomOperations_ShouldMatchASortedList() {
+        SplittableRandom random = new SplittableRandom(3);
+        GradeTreap treap = new GradeTreap();
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            if(!entries.isEmpty() && random.nextInt(3) == 0) {
+                Entry entry = entries.remove(random.nextInt(entries.size()));
+                assertTrue(treap.remove(entry.grade(), entry.studentId()));
+            } else {
+                Entry entry = new Entry(random.nextInt(51) / 10.0, i);
+                entries.add(entry);
+                treap.insert(entry.grade(), entry.studentId());
+            }
+        }
+        assertSameAs(entries, treap);
+        for (double grade = 0.0; grade <= 5.0; grade += 0.5) {
+            double current = grade;
+            assertEquals(entries.stream().filter(entry -> entry.grade() > current).count(), treap.countHigher(grade));
+            assertEquals(entries.stream().filter(entry -> entry.grade() < current).count(), treap.countLower(grade));
+        }
+    }
+
+    @Test
+    void buildFromSorted_ShouldGiveSameTreapAsInserting() {
+        SplittableRandom random = new SplittableRandom(5);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++)
+            entries.add(new Entry(random.nextInt(51) / 10.0, i));
+        entries.sort(TREAP_ORDER);
+        GradeTreap treap = new GradeTreap();
+
+        treap.buildFromSorted(entries.stream().mapToDouble(Entry::grade).toArray(), entries.stream().mapToInt(Entry::studentId).toArray());
+
+        assertSameAs(entries, treap);
+        treap.insert(5.0, -1);
+        assertArrayEquals(new double[]{5.0, -1}, treap.select(0));
+    }
+
+    @Test
+    void select_WhenPositionIsOutOfRange_ShouldThrowIndexOutOfBoundsException() {
+        assertThrows(IndexOutOfBoundsException.class, () -> new GradeTreap().select(0));
+    }
+}
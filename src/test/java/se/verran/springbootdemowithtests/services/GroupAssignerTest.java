@@ -0,0 +1,93 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.Test;
+import se.verran.springbootdemowithtests.dto.StudentGroups;
+
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupAssignerTest {
+
+    static GroupAssigner.Cohort cohort(int numberOfStudents) {
+        SplittableRandom random = new SplittableRandom(42);
+        int[] ids = IntStream.rangeClosed(1, numberOfStudents).toArray();
+        double[] grades = new double[numberOfStudents];
+        for (int i = 0; i < numberOfStudents; i++)
+            grades[i] = i % 10 == 0 ? Double.NaN : random.nextInt(51) / 10.0;
+        return new GroupAssigner.Cohort(ids, grades);
+    }
+
+    static void assertEveryStudentInExactlyOneGroupAndSizesDifferByAtMostOne(GroupAssigner.Cohort cohort, List<StudentGroups.Group> groups) {
+        int[] allIds = groups.stream().flatMapToInt(group -> Arrays.stream(group.studentIds())).sorted().toArray();
+        assertArrayEquals(cohort.ids(), allIds);
+        IntSummaryStatistics sizes = groups.stream().mapToInt(StudentGroups.Group::size).summaryStatistics();
+        assertTrue(sizes.getMax() - sizes.getMin() <= 1);
+    }
+
+    @Test
+    void random_When23StudentsIn5Groups_ShouldGiveThreeGroupsOf5AndTwoOf4() {
+        GroupAssigner.Cohort cohort = cohort(23);
+
+        List<StudentGroups.Group> groups = GroupAssigner.random(cohort, 5, 1L);
+
+        assertEquals(List.of(5, 5, 5, 4, 4), groups.stream().map(StudentGroups.Group::size).toList());
+        assertEveryStudentInExactlyOneGroupAndSizesDifferByAtMostOne(cohort, groups);
+        assertEquals(1, groups.get(0).number());
+    }
+
+    @Test
+    void random_WhenSameSeed_ShouldGiveSameGroups() {
+        GroupAssigner.Cohort cohort = cohort(100);
+
+        List<StudentGroups.Group> first = GroupAssigner.random(cohort, 7, 99L);
+        List<StudentGroups.Group> second = GroupAssigner.random(cohort, 7, 99L);
+
+        for (int i = 0; i < first.size(); i++)
+            assertArrayEquals(first.get(i).studentIds(), second.get(i).studentIds());
+    }
+
+    @Test
+    void balanced_WhenSixStudentsInTwoGroups_ShouldDealLikeASnakeDraft() {
+        GroupAssigner.Cohort cohort = new GroupAssigner.Cohort(new int[]{1, 2, 3, 4, 5, 6}, new double[]{5.0, 4.0, 3.0, 2.0, 1.0, 0.0});
+
+        List<StudentGroups.Group> groups = GroupAssigner.balanced(cohort, 2);
+
+        assertArrayEquals(new int[]{1, 4, 5}, groups.get(0).studentIds());
+        assertArrayEquals(new int[]{2, 3, 6}, groups.get(1).studentIds());
+        assertEquals(8.0 / 3, groups.get(0).averageGrade(), 1e-9);
+        assertEquals(7.0 / 3, groups.get(1).averageGrade(), 1e-9);
+    }
+
+    @Test
+    void balanced_WhenLargeCohort_ShouldGiveGroupsWithNearlyTheSameAverage() {
+        GroupAssigner.Cohort cohort = cohort(100_003);
+
+        List<StudentGroups.Group> groups = GroupAssigner.balanced(cohort, 250);
+
+        assertEveryStudentInExactlyOneGroupAndSizesDifferByAtMostOne(cohort, groups);
+        DoubleSummaryStatistics averages = groups.stream().mapToDouble(StudentGroups.Group::averageGrade).summaryStatistics();
+        assertTrue(averages.getMax() - averages.getMin() < 0.2, "averages differ by " + (averages.getMax() - averages.getMin()));
+    }
+
+    @Test
+    void balanced_WhenSomeStudentsAreUngraded_ShouldSpreadThemOverTheGroups() {
+        GroupAssigner.Cohort cohort = new GroupAssigner.Cohort(new int[]{1, 2, 3, 4}, new double[]{Double.NaN, 4.0, Double.NaN, 2.0});
+
+        List<StudentGroups.Group> groups = GroupAssigner.balanced(cohort, 2);
+
+        assertArrayEquals(new int[]{2, 3}, groups.get(0).studentIds());
+        assertArrayEquals(new int[]{4, 1}, groups.get(1).studentIds());
+        assertEquals(4.0, groups.get(0).averageGrade());
+    }
+
+    @Test
+    void byGradeDescending_WhenGradesAreEqual_ShouldKeepLowestIndexFirst() {
+        assertArrayEquals(new int[]{1, 0, 2, 3}, GroupAssigner.byGradeDescending(new double[]{3.0, 4.5, 3.0, -0.0}));
+    }
+}
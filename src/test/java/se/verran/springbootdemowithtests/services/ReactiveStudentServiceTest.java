@@ -0,0 +1,112 @@
+package se.verran.springbootdemowithtests.services;
+
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveStudentServiceTest {
+    ReactiveStudentService reactiveStudentService;
+    DatabaseClient databaseClient;
+
+    @BeforeEach
+    void setUp() {
+        // A fresh in-memory database per test
+        databaseClient = DatabaseClient.create(ConnectionFactories.get("r2dbc:h2:mem:///" + UUID.randomUUID() + "?options=DB_CLOSE_DELAY=-1"));
+        reactiveStudentService = new ReactiveStudentService(databaseClient);
+
+        databaseClient.sql("CREATE TABLE student (id INT PRIMARY KEY, first_name VARCHAR(50), last_name VARCHAR(50)," +
+                " birth_date DATE, email VARCHAR(50), java_programming_grade DOUBLE, version BIGINT DEFAULT 0 NOT NULL)").then().block();
+        insert(1, "Malin", "malinolsson@gmail.com", 2.5);
+        insert(2, "Kevin", "kevinandersson@gmail.com", null);
+        insert(3, "Anna", "annasvensson@gmail.com", 4.5);
+        insert(4, "Erik", "eriklund@gmail.com", 4.5);
+        insert(5, "Lisa", "lisaberg@gmail.com", 1.0);
+    }
+
+    void insert(int id, String firstName, String email, Double grade) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("INSERT INTO student (id, first_name, last_name, birth_date, email, java_programming_grade) VALUES (:id, :firstName, 'Olsson', :birthDate, :email, :grade)")
+                .bind("id", id)
+                .bind("firstName", firstName)
+                .bind("birthDate", LocalDate.of(1995, 6, 21))
+                .bind("email", email);
+        spec = grade == null ? spec.bindNull("grade", Double.class) : spec.bind("grade", grade);
+        spec.then().block();
+    }
+
+    @Test
+    void getAllStudents_ShouldEmitAllStudentsInIdOrder() {
+        StepVerifier.create(reactiveStudentService.getAllStudents().map(student -> student.getId()))
+                .expectNext(1, 2, 3, 4, 5)
+                .verifyComplete();
+    }
+
+    @Test
+    void getAllStudents_ShouldOnlyEmitAsManyStudentsAsRequested() {
+        StepVerifier.create(reactiveStudentService.getAllStudents(), 2)
+                .expectNextCount(2)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void getStudentById_WhenStudentExists_ShouldMapAllColumns() {
+        StepVerifier.create(reactiveStudentService.getStudentById(1))
+                .assertNext(student -> {
+                    assertEquals("Malin", student.getFirstName());
+                    assertEquals(LocalDate.of(1995, 6, 21), student.getBirthDate());
+                    assertEquals("malinolsson@gmail.com", student.getEmail());
+                    assertEquals(2.5, student.getJavaProgrammingGrade());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getStudentById_WhenStudentDoesNotExist_ShouldErrorWithNotFound() {
+        StepVerifier.create(reactiveStudentService.getStudentById(99))
+                .expectErrorSatisfies(error -> {
+                    ResponseStatusException exception = assertInstanceOf(ResponseStatusException.class, error);
+                    assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+                    assertEquals("Could not find student by id 99", exception.getReason());
+                })
+                .verify();
+    }
+
+    @Test
+    void getTopScoringStudents_WhenFiveStudents_ShouldEmitBestGradedStudentWithLowestIdFirst() {
+        StepVerifier.create(reactiveStudentService.getTopScoringStudents(20).map(grade -> grade.id()))
+                .expectNext(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void getTopScoringStudents_WhenPercentIsHigherThanGradedShare_ShouldSkipUngradedStudents() {
+        StepVerifier.create(reactiveStudentService.getTopScoringStudents(100).map(grade -> grade.id()))
+                .expectNext(3, 4, 1, 5)
+                .verifyComplete();
+    }
+
+    @Test
+    void getTopScoringStudents_WhenNoStudents_ShouldErrorWithNotFound() {
+        databaseClient.sql("DELETE FROM student").then().block();
+
+        StepVerifier.create(reactiveStudentService.getTopScoringStudents(20))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.NOT_FOUND, ((ResponseStatusException) error).getStatusCode()))
+                .verify();
+    }
+
+    @Test
+    void getTopScoringStudents_WhenPercentIsZero_ShouldThrowBadRequest() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> reactiveStudentService.getTopScoringStudents(0));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+}
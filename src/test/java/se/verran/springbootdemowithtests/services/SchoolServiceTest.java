@@ -1,23 +1,38 @@
 package se.verran.springbootdemowithtests.services;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+import se.verran.springbootdemowithtests.dto.GradeDistribution;
+import se.verran.springbootdemowithtests.dto.StudentGroups;
+import se.verran.springbootdemowithtests.dto.StudentRank;
 import se.verran.springbootdemowithtests.entities.Student;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
 class SchoolServiceTest {
     SchoolService schoolService;
     StudentService mockStudentService;
+    SchoolStatistics mockSchoolStatistics;
+    GradeRankIndex mockGradeRankIndex;
+    SimpleMeterRegistry meterRegistry;
     List<Student> mockStudentList = new ArrayList<>();
 
     Student student1;
@@ -32,7 +47,10 @@ class SchoolServiceTest {
     @BeforeEach
     void setUp() {
         mockStudentService = mock(StudentService.class);
-        schoolService = new SchoolService(mockStudentService);
+        mockSchoolStatistics = mock(SchoolStatistics.class);
+        mockGradeRankIndex = mock(GradeRankIndex.class);
+        meterRegistry = new SimpleMeterRegistry();
+        schoolService = new SchoolService(mockStudentService, mockSchoolStatistics, mockGradeRankIndex, meterRegistry, Duration.ZERO);
 
 
         student1 = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
@@ -75,21 +93,21 @@ class SchoolServiceTest {
     @Test
     void numberOfStudentsPerGroupWhenDividedIntoNumberOfGroups_WhenNumberOfGroupsIsBiggerThanNumberOfStudents_ShouldReturnErrorMessageNotAbleToDivide() {
         int numberOfGroups = 4;
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
         assertEquals("Not able to divide 3 students into 4 groups", schoolService.numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(numberOfGroups));
     }
 
     @Test
     void numberOfStudentsPerGroupWhenDividedIntoNumberOfGroups_WhenDividingThreeStudentsInThreeGroups_ShouldNotReturnErrorMessageNotAbleToDivide() {
         int numberOfGroups = 3;
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
         assertNotEquals("Not able to divide 3 students into 3 groups", schoolService.numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(numberOfGroups));
     }
 
     @Test
     void numberOfStudentsPerGroupWhenDividedIntoNumberOfGroups_WhenFewerThenTwoInEachGroup_ShouldReturnErrorMessageNotAbleToManageGroups() {
         int numberOfGroups = 2;
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
         assertEquals("Not able to manage 2 groups with 3 students", schoolService.numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(numberOfGroups));
     }
 
@@ -98,7 +116,7 @@ class SchoolServiceTest {
         int numberOfGroups = 2;
         Student student4 = new Student("Lisa", "Svan", LocalDate.of(2004, 2, 23), "lisasvan@gmail.com");
         mockStudentList.add(student4);
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
         assertEquals("2 groups could be formed with 2 students per group", schoolService.numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(numberOfGroups));
     }
 
@@ -108,7 +126,7 @@ class SchoolServiceTest {
         int numberOfGroups = 2;
         mockStudentList.add(student4);
         mockStudentList.add(student5);
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
         assertEquals("2 groups could be formed with 2 students per group, but that would leave 1 student hanging", schoolService.numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(numberOfGroups));
     }
 
@@ -120,7 +138,7 @@ class SchoolServiceTest {
         mockStudentList.add(student6);
         mockStudentList.add(student7);
         mockStudentList.add(student8);
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
         assertEquals("3 groups could be formed with 2 students per group, but that would leave 2 students hanging", schoolService.numberOfStudentsPerGroupWhenDivideIntoNumberOfGroups(numberOfGroups));
     }
 
@@ -138,13 +156,13 @@ class SchoolServiceTest {
     void numberOfGroupsWhenDividedIntoGroupsOf_WhenNumberOfStudentsIsLessThanNumberOfStudentsPerGroup_ShouldReturnErrorMessageNotAbleToManageGroups() {
         mockStudentList.remove(1);
 
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
         assertEquals("Not able to manage groups of 3 with only 2 students", schoolService.numberOfGroupsWhenDividedIntoGroupsOf(3));
     }
 
     @Test
     void numberOfGroupsWhenDividedIntoGroupsOf_WhenNumberOfStudentsDividedWithStudentsPerGroupIsLessThanTwo_ShouldReturn_ErrorMessageNotAbleToManageGroups() {
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
         assertEquals("Not able to manage groups of 2 with only 3 students", schoolService.numberOfGroupsWhenDividedIntoGroupsOf(2));
     }
 
@@ -156,7 +174,7 @@ class SchoolServiceTest {
         mockStudentList.add(student7);
         mockStudentList.add(student8);
 
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
 
         assertEquals("4 students per group is possible, there will be 2 groups", schoolService.numberOfGroupsWhenDividedIntoGroupsOf(4));
     }
@@ -168,7 +186,7 @@ class SchoolServiceTest {
         mockStudentList.add(student6);
         mockStudentList.add(student7);
 
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
 
         assertEquals("3 students per group is possible, there will be 2 groups, there will be 1 student hanging", schoolService.numberOfGroupsWhenDividedIntoGroupsOf(3));
     }
@@ -181,7 +199,7 @@ class SchoolServiceTest {
         mockStudentList.add(student7);
         mockStudentList.add(student8);
 
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockStudentService.countStudents()).thenReturn((long) mockStudentList.size());
 
         assertEquals("3 students per group is possible, there will be 2 groups, there will be 2 students hanging", schoolService.numberOfGroupsWhenDividedIntoGroupsOf(3));
     }
@@ -189,7 +207,7 @@ class SchoolServiceTest {
     @Test
     void calculateAverageGrade_WhenStudentListIsEmpty_ShouldThrowExceptionWithMessageNoStudentsFound() {
         mockStudentList.clear();
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockSchoolStatistics.getSnapshot()).thenReturn(snapshotOf(mockStudentList));
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
             schoolService.calculateAverageGrade();
         });
@@ -199,7 +217,7 @@ class SchoolServiceTest {
     @Test
     void calculateAverageGrade_WhenStudentListIsEmpty_ShouldThrowExceptionWithErrorCodeNOT_FOUND() {
         mockStudentList.clear();
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockSchoolStatistics.getSnapshot()).thenReturn(snapshotOf(mockStudentList));
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
             schoolService.calculateAverageGrade();
         });
@@ -208,66 +226,200 @@ class SchoolServiceTest {
 
     @Test
     void calculateAverageGrade_WhenStudentsArePresent_ShouldReturnAverageGradeOfTwoPointSeven() {
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+        when(mockSchoolStatistics.getSnapshot()).thenReturn(snapshotOf(mockStudentList));
         assertEquals("Average grade is 2.7", schoolService.calculateAverageGrade());
     }
 
     @Test
-    void getTopScoringStudents_WhenStudentListIsEmpty_ShouldThrowExceptionWithErrorCodeNOT_FOUND() {
-        mockStudentList.clear();
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+    void calculateAverageGrade_WhenAStudentIsUngraded_ShouldThrowExceptionWithErrorCodeCONFLICT() {
+        student4.setJavaProgrammingGrade(null);
+        mockStudentList.add(student4);
+        when(mockSchoolStatistics.getSnapshot()).thenReturn(snapshotOf(mockStudentList));
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            schoolService.calculateAverageGrade();
+        });
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+    }
 
+    @Test
+    void countStudents_WhenThreeStudentsArePresent_ShouldReturnThree() {
+        when(mockSchoolStatistics.getSnapshot()).thenReturn(snapshotOf(mockStudentList));
+        assertEquals(3, schoolService.countStudents(null, null, null));
+    }
+
+    @Test
+    void countStudents_WhenOneOfFourStudentsIsUngraded_ShouldReturnOneUngradedStudent() {
+        student4.setJavaProgrammingGrade(null);
+        mockStudentList.add(student4);
+        when(mockSchoolStatistics.getSnapshot()).thenReturn(snapshotOf(mockStudentList));
+        assertEquals(1, schoolService.countStudents(false, null, null));
+    }
+
+    @Test
+    void countStudents_WhenBornBetween1990And1999_ShouldCountFromFirstJanuaryToLastDecember() {
+        schoolService.countStudents(true, 1990, 1999);
+        verify(mockStudentService).countStudents(true, LocalDate.of(1990, 1, 1), LocalDate.of(1999, 12, 31));
+    }
+
+    @Test
+    void countStudents_WhenBornFromIsAfterBornTo_ShouldThrowExceptionWithErrorCodeBAD_REQUEST() {
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
-            schoolService.getTopScoringStudents();
+            schoolService.countStudents(null, 2000, 1990);
         });
-        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
     }
 
     @Test
-    void getTopScoringStudents_WhenStudentListIsEmpty_ShouldThrowExceptionWithMessageNoStudentsFound() {
-        mockStudentList.clear();
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+    void getTopScoringStudents_WhenStudentListIsEmpty_ShouldPassOnExceptionWithErrorCodeNOT_FOUND() {
+        when(mockStudentService.getTopScoringStudentsByPercent(20)).thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "No students found"));
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
             schoolService.getTopScoringStudents();
         });
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
         assertEquals("No students found", exception.getReason());
     }
 
+    @Test
+    void getTopScoringStudents_WhenNoPercentIsGiven_ShouldAskForTheTopTwentyPercentInOneCall() {
+        schoolService.getTopScoringStudents();
+        verify(mockStudentService).getTopScoringStudentsByPercent(20);
+        verify(mockStudentService, never()).countStudents();
+    }
 
     @Test
-    void getTopScoringStudents_WhenEightStudentsArePresent_ShouldReturnAListOfTwo() {
-        mockStudentList.add(student4);
-        mockStudentList.add(student5);
-        mockStudentList.add(student6);
-        mockStudentList.add(student7);
-        mockStudentList.add(student8);
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+    void getTopScoringStudents_WhenPercentIsFifty_ShouldAskForTheTopFiftyPercent() {
+        schoolService.getTopScoringStudents(50);
+        verify(mockStudentService).getTopScoringStudentsByPercent(50);
+    }
 
-        assertEquals(2, schoolService.getTopScoringStudents().size());
+    @Test
+    void getTopScoringStudents_WhenPercentIsZero_ShouldThrowExceptionWithErrorCodeBAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            schoolService.getTopScoringStudents(0);
+        });
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+
+    private static SchoolStatistics.Snapshot snapshotOf(List<Student> students) {
+        List<Double> grades = students.stream()
+                .map(Student::getJavaProgrammingGrade)
+                .filter(Objects::nonNull)
+                .toList();
+        double gradeSum = grades.stream().mapToDouble(Double::doubleValue).sum();
+        return new SchoolStatistics.Snapshot(students.size(), grades.size(), gradeSum, new long[SchoolStatistics.HISTOGRAM_BUCKETS]);
     }
 
     @Test
-    void getTopScoringStudents_WhenEightStudentsArePresent_ShouldReturnStudent6AtIndexZero() {
-        mockStudentList.add(student4);
-        mockStudentList.add(student5);
-        mockStudentList.add(student6);
-        mockStudentList.add(student7);
-        mockStudentList.add(student8);
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+    void getGradeDistribution_WhenStudentsAreGraded_ShouldReturnRequestedPercentiles() {
+        when(mockStudentService.countStudentsByGrade()).thenReturn(List.of(new GradeCount(1.0, 1), new GradeCount(3.0, 1)));
+        GradeDistribution distribution = schoolService.getGradeDistribution(50, 100);
+        assertEquals(2.0, distribution.median());
+        assertEquals(3.0, distribution.percentiles().get(1).grade());
+    }
 
-        assertEquals(student6, schoolService.getTopScoringStudents().get(0));
+    @Test
+    void getGradeDistribution_WhenNoStudentIsGraded_ShouldThrowExceptionWithErrorCode_NOT_FOUND() {
+        when(mockStudentService.countStudentsByGrade()).thenReturn(List.of());
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> schoolService.getGradeDistribution(50));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals("No graded students found", exception.getReason());
     }
 
     @Test
-    void getTopScoringStudents_WhenEightStudentsArePresent_ShouldReturnStudent7AtIndexOne() {
-        mockStudentList.add(student4);
-        mockStudentList.add(student5);
-        mockStudentList.add(student6);
-        mockStudentList.add(student7);
-        mockStudentList.add(student8);
-        when(mockStudentService.getAllStudents()).thenReturn(mockStudentList);
+    void getGradeDistribution_WhenPercentileIsAbove100_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> schoolService.getGradeDistribution(50, 101));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+
+    @Test
+    void getGradeDistribution_WhenResultIsKept_ShouldShareGradeCountsUntilAStudentChanges() {
+        schoolService = new SchoolService(mockStudentService, mockSchoolStatistics, mockGradeRankIndex, meterRegistry, Duration.ofMinutes(1));
+        when(mockStudentService.countStudentsByGrade()).thenReturn(List.of(new GradeCount(1.0, 1), new GradeCount(3.0, 1)));
+
+        schoolService.getGradeDistribution(50);
+        schoolService.getGradeDistribution(10, 90);
+        verify(mockStudentService, times(1)).countStudentsByGrade();
+
+        schoolService.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, 1.0, 2.0, 1L)));
+        schoolService.getGradeDistribution(50);
+        verify(mockStudentService, times(2)).countStudentsByGrade();
+    }
 
-        assertEquals(student7, schoolService.getTopScoringStudents().get(1));
+    @Test
+    void getTopScoringStudents_WhenResultIsKept_ShouldOnlyShareResultsForTheSamePercent() {
+        schoolService = new SchoolService(mockStudentService, mockSchoolStatistics, mockGradeRankIndex, meterRegistry, Duration.ofMinutes(1));
+        schoolService.getTopScoringStudents();
+        schoolService.getTopScoringStudents(20);
+        schoolService.getTopScoringStudents(50);
+
+        verify(mockStudentService, times(2)).getTopScoringStudentsByPercent(anyDouble());
+        // Counted on the registry it was given
+        assertEquals(1, meterRegistry.get("school.single.flight.calls").tag("name", "topscoringstudents").tag("result", "reused").counter().count());
+    }
+
+    @Test
+    void createGroups_WhenStudentsPerGroupIsTwoAndFiveStudents_ShouldCreateTwoGroupsOfTwoAndThree() {
+        when(mockStudentService.getCohort()).thenReturn(new GroupAssigner.Cohort(new int[]{1, 2, 3, 4, 5}, new double[]{1, 2, 3, 4, 5}));
+        StudentGroups groups = schoolService.createGroups("random", null, 2, 7L);
+        assertEquals(2, groups.groups().size());
+        assertEquals(3, groups.groups().get(0).size());
+        assertEquals(7L, groups.seed());
+    }
+
+    @Test
+    void createGroups_WhenBalanced_ShouldNotReturnASeed() {
+        when(mockStudentService.getCohort()).thenReturn(new GroupAssigner.Cohort(new int[]{1, 2, 3, 4}, new double[]{1, 2, 3, 4}));
+        StudentGroups groups = schoolService.createGroups("balanced", 2, null, null);
+        assertNull(groups.seed());
+        assertEquals(2.5, groups.groups().get(0).averageGrade());
+    }
+
+    @Test
+    void createGroups_WhenTooFewStudentsForTheGroups_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        when(mockStudentService.getCohort()).thenReturn(new GroupAssigner.Cohort(new int[]{1, 2, 3}, new double[]{1, 2, 3}));
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> schoolService.createGroups("random", 2, null, null));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals("Not able to manage 2 groups with 3 students", exception.getReason());
+    }
+
+    @Test
+    void createGroups_WhenBothSizesAreGiven_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> schoolService.createGroups("random", 2, 2, null));
+        assertEquals("Give either numberOfGroups or studentsPerGroup", exception.getReason());
+    }
+
+    @Test
+    void createGroups_WhenStrategyIsUnknown_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> schoolService.createGroups("alphabetical", 2, null, null));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+
+    @Test
+    void getStudentRank_WhenStudentIsRanked_ShouldReturnRankFromIndex() {
+        StudentRank rank = new StudentRank(7, 4.5, 2, 10, 80.0);
+        when(mockGradeRankIndex.rankOf(7)).thenReturn(Optional.of(rank));
+        assertEquals(rank, schoolService.getStudentRank(7));
+    }
+
+    @Test
+    void getStudentRank_WhenStudentIsNotRanked_ShouldThrowExceptionWithErrorCode_NOT_FOUND() {
+        when(mockGradeRankIndex.rankOf(7)).thenReturn(Optional.empty());
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> schoolService.getStudentRank(7));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals("Could not find a graded student by id 7", exception.getReason());
+    }
+
+    @Test
+    void getStudentAtPosition_WhenPositionIsZero_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> schoolService.getStudentAtPosition(0));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+
+    @Test
+    void getStudentAtPosition_WhenPositionIsPastTheEnd_ShouldThrowExceptionWithErrorCode_NOT_FOUND() {
+        when(mockGradeRankIndex.atPosition(11)).thenReturn(Optional.empty());
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> schoolService.getStudentAtPosition(11));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,74 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SchoolStatisticsTest {
+    SchoolStatistics schoolStatistics;
+    StudentService mockStudentService;
+
+    @BeforeEach
+    void setUp() {
+        mockStudentService = mock(StudentService.class);
+        schoolStatistics = new SchoolStatistics(mockStudentService);
+
+        when(mockStudentService.countStudents()).thenReturn(4L);
+        when(mockStudentService.countStudentsByGrade()).thenReturn(List.of(new GradeCount(2.5, 2), new GradeCount(5.0, 1)));
+        schoolStatistics.rebuild();
+    }
+
+    @Test
+    void rebuild_WhenThreeOfFourStudentsAreGraded_ShouldCountOneUngradedStudent() {
+        assertEquals(4, schoolStatistics.getSnapshot().numberOfStudents());
+        assertEquals(1, schoolStatistics.getSnapshot().numberOfUngradedStudents());
+    }
+
+    @Test
+    void rebuild_WhenGradesAreTwoPointFiveTwiceAndFive_ShouldSumToTen() {
+        assertEquals(10.0, schoolStatistics.getSnapshot().gradeSum());
+    }
+
+    @Test
+    void rebuild_WhenGradeIsFive_ShouldCountItInLastHistogramBucket() {
+        long[] gradeHistogram = schoolStatistics.getSnapshot().gradeHistogram();
+        assertEquals(2, gradeHistogram[5]);
+        assertEquals(1, gradeHistogram[SchoolStatistics.HISTOGRAM_BUCKETS - 1]);
+    }
+
+    @Test
+    void onStudentChange_WhenGradedStudentIsAdded_ShouldIncreaseCountAndSum() {
+        schoolStatistics.onStudentChange(new StudentChangeEvent(new StudentChange(StudentChange.Type.ADDED, 5, null, 4.0, 0L)));
+        assertEquals(5, schoolStatistics.getSnapshot().numberOfStudents());
+        assertEquals(4, schoolStatistics.getSnapshot().numberOfGradedStudents());
+        assertEquals(14.0, schoolStatistics.getSnapshot().gradeSum());
+    }
+
+    @Test
+    void onStudentChange_WhenGradeIsChanged_ShouldMoveStudentBetweenHistogramBuckets() {
+        schoolStatistics.onStudentChange(new StudentChangeEvent(StudentChange.updated(1, 2.5, 0.5, 1L)));
+        long[] gradeHistogram = schoolStatistics.getSnapshot().gradeHistogram();
+        assertEquals(1, gradeHistogram[5]);
+        assertEquals(1, gradeHistogram[1]);
+        assertEquals(8.0, schoolStatistics.getSnapshot().gradeSum());
+    }
+
+    @Test
+    void onStudentChange_WhenUngradedStudentIsGraded_ShouldLeaveNoUngradedStudents() {
+        schoolStatistics.onStudentChange(new StudentChangeEvent(StudentChange.updated(4, null, 3.0, 1L)));
+        assertEquals(0, schoolStatistics.getSnapshot().numberOfUngradedStudents());
+    }
+
+    @Test
+    void onStudentChange_WhenGradedStudentIsDeleted_ShouldDecreaseCountAndSum() {
+        schoolStatistics.onStudentChange(new StudentChangeEvent(new StudentChange(StudentChange.Type.DELETED, 3, 5.0, null, 1L)));
+        assertEquals(3, schoolStatistics.getSnapshot().numberOfStudents());
+        assertEquals(5.0, schoolStatistics.getSnapshot().gradeSum());
+    }
+}
@@ -0,0 +1,149 @@
+package se.verran.springbootdemowithtests.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    SimpleMeterRegistry meterRegistry;
+    ExecutorService executor;
+    AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newFixedThreadPool(8);
+        executions = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    double calls(String result) {
+        return meterRegistry.get("school.single.flight.calls").tag("name", "test").tag("result", result).counter().count();
+    }
+
+    void awaitCalls(String result, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls(result) < expected && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(expected, calls(result));
+    }
+
+    @Test
+    void execute_WhenCallsOverlap_ShouldRunOnceAndGiveEveryoneTheSameResult() throws Exception {
+        SingleFlight<String, List<Integer>> singleFlight = new SingleFlight<>("test", Duration.ZERO, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<List<Integer>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                executions.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return List.of(1, 2, 3);
+            })));
+        }
+        awaitCalls("collapsed", 7);
+        release.countDown();
+
+        List<Integer> first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<List<Integer>> result : results)
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+        assertEquals(1, calls("executed"));
+    }
+
+    @Test
+    void execute_WhenKeysDiffer_ShouldRunEachKey() {
+        SingleFlight<Integer, Integer> singleFlight = new SingleFlight<>("test", Duration.ofMinutes(1), meterRegistry);
+
+        assertEquals(1, singleFlight.execute(1, () -> 1));
+        assertEquals(2, singleFlight.execute(2, () -> 2));
+        assertEquals(2, calls("executed"));
+    }
+
+    @Test
+    void execute_WhenResultTtlIsZero_ShouldNotReuseAFinishedResult() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test", Duration.ZERO, meterRegistry);
+
+        singleFlight.execute("key", executions::incrementAndGet);
+        singleFlight.execute("key", executions::incrementAndGet);
+
+        assertEquals(2, executions.get());
+        assertEquals(0, calls("reused"));
+    }
+
+    @Test
+    void execute_WhenResultIsWithinTtl_ShouldReuseIt() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test", Duration.ofMinutes(1), meterRegistry);
+
+        assertEquals(1, singleFlight.execute("key", executions::incrementAndGet));
+        assertEquals(1, singleFlight.execute("key", executions::incrementAndGet));
+        assertEquals(1, calls("reused"));
+    }
+
+    @Test
+    void execute_WhenResultIsOlderThanTtl_ShouldRunAgain() throws InterruptedException {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test", Duration.ofMillis(1), meterRegistry);
+
+        singleFlight.execute("key", executions::incrementAndGet);
+        Thread.sleep(5);
+
+        assertEquals(2, singleFlight.execute("key", executions::incrementAndGet));
+    }
+
+    @Test
+    void invalidate_ShouldDropKeptResults() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test", Duration.ofMinutes(1), meterRegistry);
+
+        singleFlight.execute("key", executions::incrementAndGet);
+        singleFlight.invalidate();
+
+        assertEquals(2, singleFlight.execute("key", executions::incrementAndGet));
+    }
+
+    @Test
+    void execute_WhenCallFails_ShouldThrowToEveryWaiterAndNotKeepTheFailure() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test", Duration.ofMinutes(1), meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No students found");
+            })));
+        }
+        awaitCalls("collapsed", 3);
+        release.countDown();
+
+        for (Future<Integer> result : results) {
+            Exception exception = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertEquals("No students found", ((ResponseStatusException) exception.getCause()).getReason());
+        }
+        assertEquals(7, singleFlight.execute("key", () -> 7));
+    }
+}
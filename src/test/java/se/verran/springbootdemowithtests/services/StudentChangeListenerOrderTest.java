@@ -0,0 +1,132 @@
+package se.verran.springbootdemowithtests.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListenerFactory;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.verran.springbootdemowithtests.dto.GradeCount;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// The version has to be bumped after everything derived from the data is up to date, otherwise a request in between
+// gets the new ETag together with the old data
+class StudentChangeListenerOrderTest {
+    AnnotationConfigApplicationContext context;
+    StudentService mockStudentService;
+    SchoolService schoolService;
+    SchoolStatistics schoolStatistics;
+    GradeRankIndex gradeRankIndex;
+    RecordingStudentDataVersion studentDataVersion;
+
+    // Looks at the derived data at the moment the version is bumped
+    static class RecordingStudentDataVersion extends StudentDataVersion {
+        Runnable onBump = () -> { };
+
+        @Override
+        public void onStudentChange(StudentChangeEvent event) {
+            onBump.run();
+            super.onStudentChange(event);
+        }
+    }
+
+    // Just enough of a transaction for AFTER_COMMIT listeners to be registered and run on commit
+    static class SynchronizationOnlyTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mockStudentService = mock(StudentService.class);
+        when(mockStudentService.countStudentsByGrade()).thenReturn(List.of(new GradeCount(2.0, 1)), List.of(new GradeCount(4.0, 1)));
+        context = new AnnotationConfigApplicationContext();
+        // As a ready-made singleton, so the mock doesn't go through @PersistenceContext injection
+        context.getBeanFactory().registerSingleton("studentService", mockStudentService);
+        context.registerBean(RecordingStudentDataVersion.class);
+        context.registerBean(SchoolStatistics.class);
+        context.registerBean(GradeRankIndex.class);
+        context.registerBean(SchoolService.class, () -> new SchoolService(mockStudentService,
+                context.getBean(SchoolStatistics.class), context.getBean(GradeRankIndex.class), new SimpleMeterRegistry(), Duration.ofMinutes(1)));
+        context.registerBean(PlatformTransactionManager.class, SynchronizationOnlyTransactionManager::new);
+        // What @EnableTransactionManagement registers, without it @TransactionalEventListener acts like a plain @EventListener
+        context.registerBean(TransactionalEventListenerFactory.class);
+        context.refresh();
+        schoolService = context.getBean(SchoolService.class);
+        schoolStatistics = context.getBean(SchoolStatistics.class);
+        gradeRankIndex = context.getBean(GradeRankIndex.class);
+        studentDataVersion = context.getBean(RecordingStudentDataVersion.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    void assertDerivedDataIsUpdatedBeforeTheVersion(Runnable publish) {
+        // Kept by the single flight until a change invalidates it
+        assertEquals(2.0, schoolService.getGradeDistribution(50).median());
+        long[] gradedStudentsAtBump = {-1};
+        double[] medianAtBump = {-1};
+        boolean[] rankedAtBump = {false};
+        studentDataVersion.onBump = () -> {
+            gradedStudentsAtBump[0] = schoolStatistics.getSnapshot().numberOfGradedStudents();
+            rankedAtBump[0] = gradeRankIndex.rankOf(1).isPresent();
+            medianAtBump[0] = schoolService.getGradeDistribution(50).median();
+        };
+        long versionBefore = studentDataVersion.current().number();
+
+        publish.run();
+
+        assertEquals(versionBefore + 1, studentDataVersion.current().number());
+        assertEquals(1, gradedStudentsAtBump[0]);
+        assertTrue(rankedAtBump[0]);
+        assertEquals(4.0, medianAtBump[0]);
+    }
+
+    StudentChangeEvent studentOneGraded() {
+        return new StudentChangeEvent(new StudentChange(StudentChange.Type.ADDED, 1, null, 4.0, 0L));
+    }
+
+    @Test
+    void onStudentChange_WhenPublishedInATransaction_ShouldBumpTheVersionAfterCommitLast() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        assertDerivedDataIsUpdatedBeforeTheVersion(() -> transactionTemplate.executeWithoutResult(status -> {
+            context.publishEvent(studentOneGraded());
+            // AFTER_COMMIT, nothing may have happened yet
+            assertEquals(0, schoolStatistics.getSnapshot().numberOfGradedStudents());
+        }));
+    }
+
+    @Test
+    void onStudentChange_WhenPublishedWithoutATransaction_ShouldBumpTheVersionLast() {
+        assertDerivedDataIsUpdatedBeforeTheVersion(() -> context.publishEvent(studentOneGraded()));
+    }
+}
@@ -0,0 +1,114 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.dto.StudentResponse;
+import se.verran.springbootdemowithtests.entities.Student;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StudentCsvTest {
+
+    @Test
+    void parse_WhenCsvHasHeaderAndTwoRows_ShouldReturnTwoStudents() {
+        String csv = StudentCsv.HEADER + "\n"
+                + "Malin,Olsson,1995-06-21,malinolsson@gmail.com,\n"
+                + "Kevin,Andersson,1994-07-26,kevinandersson@gmail.com,4.5\n";
+        List<Student> students = StudentCsv.parse(csv);
+        assertEquals(2, students.size());
+        assertEquals(LocalDate.of(1995, 6, 21), students.get(0).getBirthDate());
+        assertNull(students.get(0).getJavaProgrammingGrade());
+        assertEquals(4.5, students.get(1).getJavaProgrammingGrade());
+    }
+
+    @Test
+    void parse_WhenCsvHasNoHeader_ShouldReturnFirstRowAsStudent() {
+        List<Student> students = StudentCsv.parse("Malin,Olsson,1995-06-21,malinolsson@gmail.com");
+        assertEquals("Malin", students.get(0).getFirstName());
+    }
+
+    @Test
+    void parse_WhenBirthDateIsInvalid_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            StudentCsv.parse("Malin,Olsson,21/6/1995,malinolsson@gmail.com");
+        });
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals("Invalid value on line 1", exception.getReason());
+    }
+
+    @Test
+    void format_ShouldWriteALineThatParseReadsBack() {
+        StudentResponse student = new StudentResponse(7, "Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com", 4.5, 0L, 29);
+        String line = StudentCsv.format(student);
+        assertEquals("Malin,Olsson,1995-06-21,malinolsson@gmail.com,4.5", line);
+        Student parsed = StudentCsv.parse(StudentCsv.HEADER + "\n" + line).get(0);
+        assertEquals("malinolsson@gmail.com", parsed.getEmail());
+        assertEquals(4.5, parsed.getJavaProgrammingGrade());
+    }
+
+    @Test
+    void format_WhenGradeIsMissing_ShouldLeaveLastColumnEmpty() {
+        StudentResponse student = new StudentResponse(7, "Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com", null, 0L, 29);
+        assertEquals("Malin,Olsson,1995-06-21,malinolsson@gmail.com,", StudentCsv.format(student));
+    }
+
+    @Test
+    void format_WhenNameHasCommaAndQuotes_ShouldQuoteItAndParseItBack() {
+        StudentResponse student = new StudentResponse(7, "Malin, Jr.", "Olsson \"Mo\"", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com", 4.5, 0L, 29);
+
+        String line = StudentCsv.format(student);
+
+        assertEquals("\"Malin, Jr.\",\"Olsson \"\"Mo\"\"\",1995-06-21,malinolsson@gmail.com,4.5", line);
+        Student parsed = StudentCsv.parse(StudentCsv.HEADER + "\r\n" + line + "\r\n").get(0);
+        assertEquals("Malin, Jr.", parsed.getFirstName());
+        assertEquals("Olsson \"Mo\"", parsed.getLastName());
+        assertEquals(4.5, parsed.getJavaProgrammingGrade());
+    }
+
+    @Test
+    void format_WhenTextStartsLikeAFormula_ShouldPrefixItAndParseShouldRemoveThePrefix() {
+        StudentResponse student = new StudentResponse(7, "=HYPERLINK(\"http://x\")", "-Olsson", LocalDate.of(1995, 6, 21), "@malin", null, 0L, 29);
+
+        String line = StudentCsv.format(student);
+
+        assertEquals("\"'=HYPERLINK(\"\"http://x\"\")\",'-Olsson,1995-06-21,'@malin,", line);
+        Student parsed = StudentCsv.parse(line).get(0);
+        assertEquals("=HYPERLINK(\"http://x\")", parsed.getFirstName());
+        assertEquals("-Olsson", parsed.getLastName());
+        assertEquals("@malin", parsed.getEmail());
+    }
+
+    @Test
+    void format_WhenTextStartsWithApostrophe_ShouldStayReversible() {
+        StudentResponse student = new StudentResponse(7, "'t Hooft", "O'Brien", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com", null, 0L, 29);
+
+        Student parsed = StudentCsv.parse(StudentCsv.format(student)).get(0);
+
+        assertEquals("'t Hooft", parsed.getFirstName());
+        assertEquals("O'Brien", parsed.getLastName());
+    }
+
+    @Test
+    void parse_WhenQuotedValueSpansLines_ShouldKeepTheLineBreakAndCountLinesFromTheRowStart() {
+        String csv = "\"Malin\nAnna\",Olsson,1995-06-21,malinolsson@gmail.com\n"
+                + "Kevin,Andersson,26/7/1994,kevinandersson@gmail.com\n";
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> StudentCsv.parse(csv));
+
+        assertEquals("Invalid value on line 3", exception.getReason());
+        assertEquals("Malin\nAnna", StudentCsv.parse(csv.substring(0, csv.indexOf("Kevin"))).get(0).getFirstName());
+    }
+
+    @Test
+    void parse_WhenQuoteIsNotClosed_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            StudentCsv.parse("\"Malin,Olsson,1995-06-21,malinolsson@gmail.com");
+        });
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals("Unterminated quoted value on line 1", exception.getReason());
+    }
+}
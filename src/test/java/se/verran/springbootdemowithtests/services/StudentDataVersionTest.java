@@ -0,0 +1,53 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.verran.springbootdemowithtests.entities.Student;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StudentDataVersionTest {
+    StudentDataVersion studentDataVersion;
+    StudentChangeEvent event;
+
+    @BeforeEach
+    void setUp() {
+        studentDataVersion = new StudentDataVersion();
+        event = new StudentChangeEvent(StudentChange.added(new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com")));
+    }
+
+    @Test
+    void current_WhenNothingChanged_ShouldReturnSameETag() {
+        assertEquals(studentDataVersion.current().eTag(), studentDataVersion.current().eTag());
+    }
+
+    @Test
+    void onStudentChange_ShouldGiveNewETag() {
+        String eTagBefore = studentDataVersion.current().eTag();
+        studentDataVersion.onStudentChange(event);
+        assertNotEquals(eTagBefore, studentDataVersion.current().eTag());
+    }
+
+    @Test
+    void onStudentChange_WhenTwoChangesInTheSameMillisecond_ShouldGiveTwoNewETags() {
+        String eTagBefore = studentDataVersion.current().eTag();
+        studentDataVersion.onStudentChange(event);
+        String eTagBetween = studentDataVersion.current().eTag();
+        studentDataVersion.onStudentChange(event);
+        assertNotEquals(eTagBefore, eTagBetween);
+        assertNotEquals(eTagBetween, studentDataVersion.current().eTag());
+    }
+
+    @Test
+    void current_WhenTwoInstances_ShouldNotShareETags() {
+        assertNotEquals(new StudentDataVersion().current().eTag(), studentDataVersion.current().eTag());
+    }
+
+    @Test
+    void eTag_ShouldBeAQuotedWeakETag() {
+        String eTag = studentDataVersion.current().eTag();
+        assertTrue(eTag.startsWith("W/\"") && eTag.endsWith("\""));
+    }
+}
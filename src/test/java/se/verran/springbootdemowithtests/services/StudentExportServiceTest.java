@@ -0,0 +1,156 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.dto.ExportJobStatus;
+import se.verran.springbootdemowithtests.dto.StudentResponse;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StudentExportServiceTest {
+
+    @TempDir
+    Path directory;
+    StudentService mockStudentService;
+    StudentExportService studentExportService;
+
+    @BeforeEach
+    void setUp() {
+        mockStudentService = mock(StudentService.class);
+        doAnswer(invocation -> {
+            Consumer<StudentResponse> action = invocation.getArgument(0);
+            action.accept(new StudentResponse(1, "Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com", 2.5, 0L, 29));
+            action.accept(new StudentResponse(2, "Kevin", "Andersson", LocalDate.of(1994, 7, 26), "kevinandersson@gmail.com", null, 0L, 30));
+            return null;
+        }).when(mockStudentService).forEachStudent(any());
+        studentExportService = new StudentExportService(mockStudentService, directory, 1, 1, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        studentExportService.destroy();
+    }
+
+    ExportJobStatus awaitFinished(String id) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            ExportJobStatus status = studentExportService.getStatus(id);
+            if(status.finishedAt() != null)
+                return status;
+            Thread.sleep(10);
+        }
+        return fail("Export " + id + " did not finish");
+    }
+
+    @Test
+    void startExport_ShouldWriteHeaderAndOneCsvLinePerStudent() throws Exception {
+        ExportJobStatus started = studentExportService.startExport(false);
+
+        ExportJobStatus finished = awaitFinished(started.id());
+
+        assertEquals(ExportJobStatus.State.DONE, finished.state());
+        assertEquals(2, finished.rows());
+        assertEquals(List.of(StudentCsv.HEADER,
+                        "Malin,Olsson,1995-06-21,malinolsson@gmail.com,2.5",
+                        "Kevin,Andersson,1994-07-26,kevinandersson@gmail.com,"),
+                Files.readAllLines(studentExportService.getFile(started.id())));
+        assertEquals("students-" + started.id() + ".csv", studentExportService.getFileName(started.id()));
+    }
+
+    @Test
+    void startExport_WhenGzip_ShouldWriteGzippedCsv() throws Exception {
+        ExportJobStatus started = studentExportService.startExport(true);
+        awaitFinished(started.id());
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(studentExportService.getFile(started.id())))) {
+            String csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(2, StudentCsv.parse(csv).size());
+        }
+        assertTrue(studentExportService.getFileName(started.id()).endsWith(".csv.gz"));
+    }
+
+    @Test
+    void startExport_WhenReadingFails_ShouldMarkJobFailedAndLeaveNoFile() throws Exception {
+        doThrow(new IllegalStateException("Connection lost")).when(mockStudentService).forEachStudent(any());
+
+        ExportJobStatus finished = awaitFinished(studentExportService.startExport(false).id());
+
+        assertEquals(ExportJobStatus.State.FAILED, finished.state());
+        assertEquals("Connection lost", finished.error());
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void startExport_WhenRunningAndQueueAreFull_ShouldThrowServiceUnavailable() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(mockStudentService).forEachStudent(any());
+        studentExportService.startExport(false);
+        started.await(5, TimeUnit.SECONDS);
+        studentExportService.startExport(false);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentExportService.startExport(false));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+        assertEquals(2, studentExportService.getAllStatuses().size());
+        release.countDown();
+    }
+
+    @Test
+    void getFile_WhenExportIsNotDone_ShouldThrowConflict() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(mockStudentService).forEachStudent(any());
+        String id = studentExportService.startExport(false).id();
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentExportService.getFile(id));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        release.countDown();
+    }
+
+    @Test
+    void getStatus_WhenExportDoesNotExist_ShouldThrowNotFound() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentExportService.getStatus("nope"));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals("Could not find export by id nope", exception.getReason());
+    }
+
+    @Test
+    void getStatus_WhenRetentionHasPassed_ShouldSweepTheJobAndItsFile() throws Exception {
+        studentExportService.destroy();
+        studentExportService = new StudentExportService(mockStudentService, directory, 1, 1, Duration.ZERO);
+        String id = studentExportService.startExport(false).id();
+        Path file = directory.resolve("students-" + id + ".csv");
+        for (int i = 0; i < 500 && !studentExportService.getAllStatuses().isEmpty(); i++)
+            Thread.sleep(10);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentExportService.getStatus(id));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,148 @@
+package se.verran.springbootdemowithtests.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import se.verran.springbootdemowithtests.config.CacheConfig;
+import se.verran.springbootdemowithtests.dto.GradeAssignment;
+import se.verran.springbootdemowithtests.entities.Student;
+import se.verran.springbootdemowithtests.repositories.StudentRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+// getStudentById through the Spring cache proxy, every write has to evict what it changed
+@SpringJUnitConfig
+class StudentServiceCacheTest {
+
+    @Configuration
+    @EnableCaching
+    static class CachingConfig {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(CacheConfig.STUDENTS_CACHE);
+        }
+
+        @Bean
+        StudentService studentService(StudentRepository studentRepository) {
+            return new StudentService(studentRepository, event -> { }, false, 500);
+        }
+    }
+
+    @MockBean
+    StudentRepository mockStudentRepository;
+    // Only there so @PersistenceContext can be resolved, the service gets a mocked EntityManager below
+    @MockBean
+    EntityManagerFactory mockEntityManagerFactory;
+
+    @Autowired
+    StudentService studentService;
+    @Autowired
+    CacheManager cacheManager;
+
+    Student student;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.STUDENTS_CACHE).clear();
+        StudentService target = AopTestUtils.getTargetObject(studentService);
+        ReflectionTestUtils.setField(target, "entityManager", mock(EntityManager.class));
+        student = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        student.setId(1);
+        student.setVersion(0L);
+        when(mockStudentRepository.findById(1)).thenReturn(Optional.of(student));
+        when(mockStudentRepository.deleteIfVersionMatches(1, 0L)).thenReturn(1);
+        when(mockStudentRepository.findAllById(any())).thenReturn(List.of(student));
+        when(mockStudentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockStudentRepository.updateGradeIfVersionMatches(anyInt(), anyDouble(), anyLong())).thenReturn(1);
+    }
+
+    @Test
+    void getStudentById_WhenCalledTwice_ShouldOnlyReadTheDatabaseOnce() {
+        studentService.getStudentById(1);
+        studentService.getStudentById(1);
+
+        verify(mockStudentRepository, times(1)).findById(1);
+    }
+
+    @Test
+    void updateStudent_ShouldEvictTheStudent() {
+        studentService.getStudentById(1);
+        Student update = new Student("Malin", "Svensson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        update.setId(1);
+        studentService.updateStudent(update);
+        clearInvocations(mockStudentRepository);
+
+        studentService.getStudentById(1);
+
+        verify(mockStudentRepository).findById(1);
+    }
+
+    @Test
+    void setGradeForStudentById_ShouldEvictTheStudent() {
+        studentService.getStudentById(1);
+        studentService.setGradeForStudentById(1, "4.0");
+        clearInvocations(mockStudentRepository);
+
+        studentService.getStudentById(1);
+
+        verify(mockStudentRepository).findById(1);
+    }
+
+    @Test
+    void deleteStudent_ShouldEvictTheStudent() {
+        studentService.getStudentById(1);
+        studentService.deleteStudent(1);
+        clearInvocations(mockStudentRepository);
+
+        studentService.getStudentById(1);
+
+        verify(mockStudentRepository).findById(1);
+    }
+
+    @Test
+    void setGradesForStudents_ShouldEvictEveryStudent() {
+        studentService.getStudentById(1);
+        studentService.setGradesForStudents(List.of(new GradeAssignment(1, "4.0")));
+        clearInvocations(mockStudentRepository);
+
+        studentService.getStudentById(1);
+
+        verify(mockStudentRepository).findById(1);
+    }
+
+    @Test
+    void updateStudent_ShouldNotEvictOtherStudents() {
+        Student otherStudent = new Student("Kevin", "Andersson", LocalDate.of(1994, 7, 26), "kevinandersson@gmail.com");
+        otherStudent.setId(2);
+        otherStudent.setVersion(0L);
+        when(mockStudentRepository.findById(2)).thenReturn(Optional.of(otherStudent));
+        studentService.getStudentById(2);
+        Student update = new Student("Malin", "Svensson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        update.setId(1);
+        studentService.updateStudent(update);
+
+        studentService.getStudentById(2);
+
+        verify(mockStudentRepository, times(1)).findById(2);
+    }
+}
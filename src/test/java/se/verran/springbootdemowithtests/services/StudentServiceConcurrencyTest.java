@@ -0,0 +1,168 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.entities.Student;
+import se.verran.springbootdemowithtests.repositories.StudentRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+
+// Concurrent grade updates against a real H2 database. Not wrapped in a test transaction, every conditional UPDATE
+// commits on its own like it does in the application.
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({StudentService.class, StudentServiceConcurrencyTest.RecordingConfig.class})
+class StudentServiceConcurrencyTest {
+
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        ChangeRecorder changeRecorder() {
+            return new ChangeRecorder();
+        }
+    }
+
+    static class ChangeRecorder {
+        final Queue<StudentChange> changes = new ConcurrentLinkedQueue<>();
+
+        @EventListener
+        public void onStudentChange(StudentChangeEvent event) {
+            changes.addAll(event.changes());
+        }
+    }
+
+    @Autowired
+    StudentService studentService;
+    @SpyBean
+    StudentRepository studentRepository;
+    @Autowired
+    ChangeRecorder changeRecorder;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    ExecutorService executor;
+    Student student;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+        student = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        student.setJavaProgrammingGrade(1.0);
+        student = studentRepository.save(student);
+        changeRecorder.changes.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        studentRepository.deleteAll();
+    }
+
+    @Test
+    void setGradeForStudentById_WhenFortyCallsRaceFromEightThreads_ShouldApplyEveryWinningUpdateOnceWithExactOldGrades() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String grade = String.valueOf(i % 5 + 0.5);
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    studentService.setGradeForStudentById(student.getId(), grade);
+                    return true;
+                } catch (ResponseStatusException e) {
+                    assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int succeeded = 0;
+        for (Future<Boolean> result : results)
+            if(result.get(30, TimeUnit.SECONDS))
+                succeeded++;
+
+        Student stored = studentRepository.findById(student.getId()).orElseThrow();
+        assertTrue(succeeded > 0);
+        assertEquals(student.getVersion() + succeeded, stored.getVersion());
+        assertEquals(succeeded, changeRecorder.changes.size());
+        // Every change starts from the grade the previous one left, so they add up to the stored grade
+        double gradeFromChanges = 1.0;
+        for (StudentChange change : changeRecorder.changes)
+            gradeFromChanges += change.newGrade() - change.oldGrade();
+        assertEquals(stored.getJavaProgrammingGrade(), gradeFromChanges, 1e-9);
+    }
+
+    @Test
+    void setGradeForStudentById_WhenAnotherWriterCommitsAfterEveryRead_ShouldRetryAndThenThrowConflict() {
+        // Each read is immediately outdated by a committed write of someone else
+        doAnswer(invocation -> {
+            Student read = jdbcTemplate.queryForObject("SELECT java_programming_grade, version FROM student WHERE id = ?", (row, rowNumber) -> {
+                Student readStudent = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+                readStudent.setId(student.getId());
+                readStudent.setJavaProgrammingGrade(row.getDouble("java_programming_grade"));
+                readStudent.setVersion(row.getLong("version"));
+                return readStudent;
+            }, student.getId());
+            jdbcTemplate.update("UPDATE student SET java_programming_grade = 5.0, version = version + 1 WHERE id = ?", student.getId());
+            return Optional.of(read);
+        }).when(studentRepository).findById(anyInt());
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> studentService.setGradeForStudentById(student.getId(), "3.0"));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        assertTrue(changeRecorder.changes.isEmpty());
+        Student stored = studentRepository.findAll().get(0);
+        assertEquals(5.0, stored.getJavaProgrammingGrade());
+        // Eight attempts, each one outdated by the other writer
+        assertEquals(student.getVersion() + 8, stored.getVersion());
+    }
+
+    @Test
+    void updateGradeIfVersionMatches_WhenEightWritersUseTheSameVersion_ShouldLetOnlyOneWin() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            double grade = i % 5;
+            results.add(executor.submit(() -> {
+                start.await();
+                return studentRepository.updateGradeIfVersionMatches(student.getId(), grade, student.getVersion());
+            }));
+        }
+        start.countDown();
+        int updated = 0;
+        for (Future<Integer> result : results)
+            updated += result.get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, updated);
+        assertEquals(student.getVersion() + 1, studentRepository.findAll().get(0).getVersion());
+    }
+}
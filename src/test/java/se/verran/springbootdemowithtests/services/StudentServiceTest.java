@@ -1,18 +1,43 @@
 package se.verran.springbootdemowithtests.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
+import se.verran.springbootdemowithtests.dto.BulkImportResult;
+import se.verran.springbootdemowithtests.dto.GradeAssignment;
+import se.verran.springbootdemowithtests.dto.GradeResult;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+import se.verran.springbootdemowithtests.dto.StudentResponse;
+import se.verran.springbootdemowithtests.dto.StudentSearchFilter;
+import se.verran.springbootdemowithtests.dto.StudentSearchResult;
+import se.verran.springbootdemowithtests.dto.StudentView;
 import se.verran.springbootdemowithtests.entities.Student;
 import se.verran.springbootdemowithtests.repositories.StudentRepository;
 
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.http.HttpStatus.NOT_ACCEPTABLE;
@@ -21,6 +46,7 @@ class StudentServiceTest {
 
     Student mockStudent;
     StudentRepository mockStudentRepository;
+    ApplicationEventPublisher mockEventPublisher;
     StudentService studentService;
     List<Student> mockStudentList;
 
@@ -29,7 +55,11 @@ class StudentServiceTest {
 
         mockStudent = mock(Student.class);
         mockStudentRepository = mock(StudentRepository.class);
-        studentService = new StudentService(mockStudentRepository);
+        mockEventPublisher = mock(ApplicationEventPublisher.class);
+        studentService = new StudentService(mockStudentRepository, mockEventPublisher, false, 500);
+        when(mockStudentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(mockStudentRepository.updateGradeIfVersionMatches(anyInt(), anyDouble(), anyLong())).thenReturn(1);
+        ReflectionTestUtils.setField(studentService, "entityManager", mock(EntityManager.class));
 
         mockStudentList = Arrays.asList(new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com"),
                 new Student("Kevin", "Andersson", LocalDate.of(1994, 7, 26), "kevinandersson@gmail.com"),
@@ -38,7 +68,7 @@ class StudentServiceTest {
 
     @Test
     void addStudent_WhenStudentExistByEmail_ShouldThrowResponseStatusException() {
-        when(mockStudentRepository.existsStudentByEmail(mockStudent.getEmail())).thenReturn(true);
+        when(mockStudentRepository.save(mockStudent)).thenThrow(emailConflict());
         assertThrows(ResponseStatusException.class, () -> {
             studentService.addStudent(mockStudent);
         });
@@ -47,51 +77,303 @@ class StudentServiceTest {
     @Test
     void addStudent_WhenStudentExistByEmail_ShouldThrowExceptionWithMessage_EmailAlreadyExists() {
         when(mockStudent.getEmail()).thenReturn("gertrudands@gmail.com");
-        when(mockStudentRepository.existsStudentByEmail(mockStudent.getEmail())).thenReturn(true);
+        when(mockStudentRepository.save(mockStudent)).thenThrow(emailConflict());
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
             studentService.addStudent(mockStudent);
         });
 
         String exceptionMessage = exception.getReason();
         assertEquals("Email gertrudands@gmail.com already exists", exceptionMessage);
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
     }
 
+    @Test
+    void addStudent_WhenOtherConstraintIsViolated_ShouldRethrowViolation() {
+        when(mockStudentRepository.save(mockStudent)).thenThrow(new DataIntegrityViolationException("could not execute statement",
+                new SQLIntegrityConstraintViolationException("Column 'first_name' cannot be null")));
+        assertThrows(DataIntegrityViolationException.class, () -> studentService.addStudent(mockStudent));
+    }
+
+    @Test
+    void addStudent_WhenStudentExistByEmail_ShouldNotPublishChange() {
+        when(mockStudentRepository.save(mockStudent)).thenThrow(emailConflict());
+        assertThrows(ResponseStatusException.class, () -> studentService.addStudent(mockStudent));
+        verifyNoInteractions(mockEventPublisher);
+    }
 
     @Test
     void addStudent_WhenEmailDoesNotExist_ShouldRunSaveMethodFromStudentRepository() {
-        when(mockStudentRepository.existsStudentByEmail(mockStudent.getEmail())).thenReturn(false);
         studentService.addStudent(mockStudent);
         verify(mockStudentRepository).save(mockStudent);
+        verify(mockStudentRepository, never()).existsStudentByEmail(any());
+    }
+
+    // A response body posted back as is, with the id and version of a stored student
+    Student postedBackStudent() throws Exception {
+        return new ObjectMapper().findAndRegisterModules().readValue("""
+                {"id":7,"firstName":"Malin","lastName":"Olsson","birthDate":"1995-06-21","email":"malinolsson@gmail.com","version":3}
+                """, Student.class);
+    }
+
+    @Test
+    void addStudent_WhenBodyHasIdAndVersion_ShouldSaveAsNewStudent() throws Exception {
+        Student student = postedBackStudent();
+        assertEquals(3L, student.getVersion());
+
+        studentService.addStudent(student);
+
+        verify(mockStudentRepository).save(argThat(saved -> saved.getId() == 0 && saved.getVersion() == null));
+    }
+
+    @Test
+    void addStudents_WhenBodyHasIdAndVersion_ShouldSaveAsNewStudent() throws Exception {
+        studentService.addStudents(List.of(postedBackStudent()));
+
+        verify(mockStudentRepository).saveAll(argThat(saved -> {
+            Student student = saved.iterator().next();
+            return student.getId() == 0 && student.getVersion() == null;
+        }));
+    }
+
+    DataIntegrityViolationException emailConflict() {
+        return new DataIntegrityViolationException("could not execute statement",
+                new SQLIntegrityConstraintViolationException("Duplicate entry 'gertrudands@gmail.com' for key 'student.uk_student_email'"));
+    }
+
+    @Test
+    void addStudents_WhenNoConflictsExist_ShouldImportAllStudents() {
+        BulkImportResult result = studentService.addStudents(mockStudentList);
+        assertEquals(3, result.imported());
+        assertTrue(result.conflicts().isEmpty());
+        verify(mockStudentRepository).saveAll(mockStudentList);
     }
 
     @Test
-    void getAllStudents_WhenUsed_ShouldRunMetod_FindAll_FromStudentRepository() {
-        studentService.getAllStudents();
-        verify(mockStudentRepository).findAll();
+    void addStudents_WhenEmailAlreadyExists_ShouldReportConflictForThatRow() {
+        when(mockStudentRepository.findExistingEmails(anyCollection())).thenReturn(Set.of("kevinandersson@gmail.com"));
+        BulkImportResult result = studentService.addStudents(mockStudentList);
+        assertEquals(2, result.imported());
+        assertEquals(2, result.conflicts().get(0).row());
+        assertEquals("Email kevinandersson@gmail.com already exists", result.conflicts().get(0).reason());
     }
 
     @Test
-    void getAllStudents_WhenThreeStudentsArePresent_ShouldReturnAListOfThree() {
-        when(mockStudentRepository.findAll()).thenReturn(mockStudentList);
-        assertThat(studentService.getAllStudents()).hasSize(3);
+    void addStudents_WhenEmailAppearsTwice_ShouldReportConflictForSecondRow() {
+        List<Student> students = Arrays.asList(mockStudentList.get(0),
+                new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com"));
+        BulkImportResult result = studentService.addStudents(students);
+        assertEquals(1, result.imported());
+        assertEquals(2, result.conflicts().get(0).row());
     }
 
     @Test
-    void getAllStudents_ShouldReturnMockStudentList() {
-        when(mockStudentRepository.findAll()).thenReturn(mockStudentList);
-        assertEquals(mockStudentList, studentService.getAllStudents());
+    void addStudents_WhenGradeIsNaN_ShouldReportConflictForThatRow() {
+        mockStudentList.get(1).setJavaProgrammingGrade(Double.NaN);
+        BulkImportResult result = studentService.addStudents(mockStudentList);
+        assertEquals(2, result.imported());
+        assertEquals("Valid grades are 0.0 - 5.0", result.conflicts().get(0).reason());
     }
 
     @Test
-    void deleteStudent_WhenStudentIdIsOne_ShouldRunMethod_DeleteByIDFromStudentRepository() {
-        when(mockStudentRepository.existsById(1)).thenReturn(true);
+    void addStudents_WhenOneNameIsTooLongForTheColumn_ShouldReportConflictForThatRowAndImportTheRest() {
+        mockStudentList.get(1).setLastName("A".repeat(Student.NAME_LENGTH + 1));
+        BulkImportResult result = studentService.addStudents(mockStudentList);
+        assertEquals(2, result.imported());
+        assertEquals(2, result.conflicts().get(0).row());
+        assertEquals("First and last name can be at most 50 characters", result.conflicts().get(0).reason());
+        verify(mockStudentRepository).saveAll(List.of(mockStudentList.get(0), mockStudentList.get(2)));
+    }
+
+    @Test
+    void addStudents_WhenEmailIsTooLongForTheColumn_ShouldReportConflictForThatRow() {
+        mockStudentList.get(0).setEmail("a".repeat(Student.EMAIL_LENGTH - "@gmail.com".length() + 1) + "@gmail.com");
+        BulkImportResult result = studentService.addStudents(mockStudentList);
+        assertEquals(2, result.imported());
+        assertEquals("Email can be at most 50 characters", result.conflicts().get(0).reason());
+    }
+
+    @Test
+    void addStudents_WhenEmailAppearsTwiceWithDifferentCase_ShouldReportConflictForSecondRow() {
+        List<Student> students = Arrays.asList(mockStudentList.get(0),
+                new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "MalinOlsson@gmail.com"));
+        BulkImportResult result = studentService.addStudents(students);
+        assertEquals(1, result.imported());
+        assertEquals("Email MalinOlsson@gmail.com appears more than once", result.conflicts().get(0).reason());
+    }
+
+    @Test
+    void addStudents_WhenEmailExistsWithDifferentCase_ShouldReportConflictForThatRow() {
+        when(mockStudentRepository.findExistingEmails(anyCollection())).thenReturn(Set.of("KevinAndersson@gmail.com"));
+        BulkImportResult result = studentService.addStudents(mockStudentList);
+        assertEquals(2, result.imported());
+        assertEquals(2, result.conflicts().get(0).row());
+    }
+
+    @Test
+    void addStudents_WhenBatchSizeIsTwo_ShouldSaveInTwoBatches() {
+        studentService = new StudentService(mockStudentRepository, mockEventPublisher, false, 2);
+        ReflectionTestUtils.setField(studentService, "entityManager", mock(EntityManager.class));
+        studentService.addStudents(mockStudentList);
+        verify(mockStudentRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    void constructor_WhenBatchSizeIsZero_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new StudentService(mockStudentRepository, mockEventPublisher, false, 0));
+    }
+
+    @Test
+    void getTopScoringStudents_ShouldLetTheDatabaseLimitTheResult() {
+        studentService.getTopScoringStudents(2);
+        verify(mockStudentRepository).findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc(Limit.of(2));
+        verify(mockStudentRepository, never()).streamByJavaProgrammingGradeIsNotNull();
+    }
+
+    @Test
+    void getTopScoringStudentsByPercent_WhenNoStudentsArePresent_ShouldThrowExceptionWithErrorCodeNOT_FOUND() {
+        when(mockStudentRepository.count()).thenReturn(0L);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentService.getTopScoringStudentsByPercent(20));
+
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatusCode());
+        assertEquals("No students found", exception.getReason());
+        verify(mockStudentRepository, never()).findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc(any());
+    }
+
+    @Test
+    void getTopScoringStudentsByPercent_WhenEightStudentsArePresent_ShouldAskForTheTopTwo() {
+        when(mockStudentRepository.count()).thenReturn(8L);
+        studentService.getTopScoringStudentsByPercent(20);
+        verify(mockStudentRepository).findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc(Limit.of(2));
+    }
+
+    @Test
+    void getTopScoringStudentsByPercent_WhenEightStudentsArePresentAndPercentIsFifty_ShouldAskForTheTopFour() {
+        when(mockStudentRepository.count()).thenReturn(8L);
+        studentService.getTopScoringStudentsByPercent(50);
+        verify(mockStudentRepository).findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc(Limit.of(4));
+    }
+
+    @Test
+    void getTopScoringStudents_WhenTopScoringInMemory_ShouldSelectFromAStreamOfGradedStudents() {
+        studentService = new StudentService(mockStudentRepository, mockEventPublisher, true, 500);
+        when(mockStudentRepository.streamByJavaProgrammingGradeIsNotNull()).thenReturn(Stream.of(
+                new StudentGrade(1, "Malin", "Olsson", 2.5),
+                new StudentGrade(2, "Kevin", "Andersson", 4.5),
+                new StudentGrade(3, "Lisa", "Svan", 3.0)));
+
+        List<StudentGrade> topScoringStudents = studentService.getTopScoringStudents(2);
+
+        assertEquals(List.of(2, 3), topScoringStudents.stream().map(StudentGrade::id).toList());
+        verify(mockStudentRepository, never()).findByJavaProgrammingGradeIsNotNullOrderByJavaProgrammingGradeDescIdAsc(any());
+    }
+
+    @Test
+    void addStudent_WhenEmailDoesNotExist_ShouldPublishAddedChange() {
+        studentService.addStudent(mockStudentList.get(0));
+        verify(mockEventPublisher).publishEvent(new StudentChangeEvent(StudentChange.added(mockStudentList.get(0))));
+    }
+
+    @Test
+    void getAllStudentResponses_WhenStudentIsBorn2000_1_1_ShouldAddAgeFromToday() {
+        LocalDate birthDate = LocalDate.of(2000, 1, 1);
+        when(mockStudentRepository.findAllViewsByOrderByIdAsc()).thenReturn(List.of(
+                new StudentView(1, "Malin", "Olsson", birthDate, "malinolsson@gmail.com", 2.5, 0L)));
+
+        StudentResponse response = studentService.getAllStudentResponses().get(0);
+
+        assertEquals(Period.between(birthDate, LocalDate.now()).getYears(), response.age());
+        assertEquals(2.5, response.javaProgrammingGrade());
+        verify(mockStudentRepository, never()).findAll();
+    }
+
+    @Test
+    void getStudentsAfterId_WhenPageIsFull_ShouldReturnIdOfLastStudentAsNextAfterId() {
+        when(mockStudentRepository.findByIdGreaterThanOrderByIdAsc(4, Limit.of(3))).thenReturn(studentViews(5, 6, 7));
+        assertEquals(7, studentService.getStudentsAfterId(4, 3).nextAfterId());
+    }
+
+    @Test
+    void getStudentsAfterId_WhenPageIsNotFull_ShouldReturnNullAsNextAfterId() {
+        when(mockStudentRepository.findByIdGreaterThanOrderByIdAsc(4, Limit.of(10))).thenReturn(studentViews(5, 6, 7));
+        assertNull(studentService.getStudentsAfterId(4, 10).nextAfterId());
+    }
+
+    @Test
+    void forEachStudent_WhenThreeStudentsAreStreamed_ShouldHandOverAllThreeInOrder() {
+        when(mockStudentRepository.streamAllByOrderByIdAsc()).thenReturn(studentViews(1, 2, 3).stream());
+        List<Integer> ids = new ArrayList<>();
+
+        studentService.forEachStudent(student -> ids.add(student.id()));
+
+        assertEquals(List.of(1, 2, 3), ids);
+    }
+
+    List<StudentView> studentViews(int... ids) {
+        return Arrays.stream(ids)
+                .mapToObj(id -> new StudentView(id, "Malin", "Olsson", LocalDate.of(1995, 6, 21), "student" + id + "@gmail.com", null, 0L))
+                .toList();
+    }
+
+    @Test
+    void getStudentsAfterId_WhenPageSizeIsZero_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
+            studentService.getStudentsAfterId(0, 0);
+        });
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+
+    @Test
+    void deleteStudent_WhenStudentIdIsOne_ShouldRunMethod_DeleteIfVersionMatchesFromStudentRepository() {
+        mockStudentList.get(0).setVersion(3L);
+        when(mockStudentRepository.findById(1)).thenReturn(Optional.of(mockStudentList.get(0)));
+        when(mockStudentRepository.deleteIfVersionMatches(1, 3L)).thenReturn(1);
+        studentService.deleteStudent(1);
+        verify(mockStudentRepository).deleteIfVersionMatches(1, 3L);
+    }
+
+    @Test
+    void deleteStudent_WhenStudentIsGraded_ShouldPublishChangeWithOldGrade() {
+        mockStudentList.get(0).setJavaProgrammingGrade(3.5);
+        mockStudentList.get(0).setVersion(0L);
+        when(mockStudentRepository.findById(1)).thenReturn(Optional.of(mockStudentList.get(0)));
+        when(mockStudentRepository.deleteIfVersionMatches(1, 0L)).thenReturn(1);
+        studentService.deleteStudent(1);
+        verify(mockEventPublisher).publishEvent(new StudentChangeEvent(new StudentChange(StudentChange.Type.DELETED, 0, 3.5, null, 0L)));
+    }
+
+    @Test
+    void deleteStudent_WhenGradeChangesBeforeTheDelete_ShouldPublishChangeWithTheGradeThatWasDeleted() {
+        Student readStudent = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        readStudent.setJavaProgrammingGrade(3.5);
+        readStudent.setVersion(0L);
+        Student regradedStudent = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        regradedStudent.setJavaProgrammingGrade(4.0);
+        regradedStudent.setVersion(1L);
+        when(mockStudentRepository.findById(1)).thenReturn(Optional.of(readStudent), Optional.of(regradedStudent));
+        when(mockStudentRepository.deleteIfVersionMatches(1, 0L)).thenReturn(0);
+        when(mockStudentRepository.deleteIfVersionMatches(1, 1L)).thenReturn(1);
+
         studentService.deleteStudent(1);
-        verify(mockStudentRepository).deleteById(1);
+
+        verify(mockEventPublisher).publishEvent(new StudentChangeEvent(new StudentChange(StudentChange.Type.DELETED, 0, 4.0, null, 1L)));
+        verify(mockEventPublisher, times(1)).publishEvent(any(StudentChangeEvent.class));
+    }
+
+    @Test
+    void deleteStudent_WhenVersionNeverMatches_ShouldThrowExceptionWithErrorCode_CONFLICT() {
+        mockStudentList.get(0).setVersion(0L);
+        when(mockStudentRepository.findById(1)).thenReturn(Optional.of(mockStudentList.get(0)));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentService.deleteStudent(1));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        verify(mockEventPublisher, never()).publishEvent(any(StudentChangeEvent.class));
     }
 
     @Test
     void deleteStudent_WhenStudentIdIs10_ShouldThrowResponseStatusException() {
-        when(mockStudentRepository.existsById(10)).thenReturn(false);
+        when(mockStudentRepository.findById(10)).thenReturn(Optional.empty());
         assertThrows(ResponseStatusException.class, () -> {
             studentService.deleteStudent(10);
         });
@@ -101,7 +383,7 @@ class StudentServiceTest {
     @Test
     void deleteStudent_WhenStudentIdIsTen_ShouldThrowExceptionWithMessage_CouldNotFindAndDeleteStudentById10() {
         int studentId = 10;
-        when(mockStudentRepository.existsById(studentId)).thenReturn(false);
+        when(mockStudentRepository.findById(studentId)).thenReturn(Optional.empty());
         String exceptionMessage = assertThrows(ResponseStatusException.class, () -> {
             studentService.deleteStudent(studentId);
         }).getReason();
@@ -111,7 +393,7 @@ class StudentServiceTest {
 
     @Test
     void updateStudent_WhenStudentIdIsTen_ShouldThrowResponseStatusException() {
-        when(mockStudentRepository.existsById(mockStudent.getId())).thenReturn(false);
+        when(mockStudentRepository.findById(mockStudent.getId())).thenReturn(Optional.empty());
         assertThrows(ResponseStatusException.class, () -> {
             studentService.updateStudent(mockStudent);
         });
@@ -119,7 +401,7 @@ class StudentServiceTest {
 
     @Test
     void updateStudent_WhenStudentIdIsTen_ShouldThrowExceptionWithMessage_CouldNotFindAndUpdateStudentById10() {
-        when(mockStudentRepository.existsById(mockStudent.getId())).thenReturn(false);
+        when(mockStudentRepository.findById(mockStudent.getId())).thenReturn(Optional.empty());
         when(mockStudent.getId()).thenReturn(10);
         String exceptionMessage = assertThrows(ResponseStatusException.class, () -> {
             studentService.updateStudent(mockStudent);
@@ -130,7 +412,7 @@ class StudentServiceTest {
 
     @Test
     void updateStudent_WhenStudentExistsById_ShouldRunMethodSaveFromStudentRepository() {
-        when(mockStudentRepository.existsById(mockStudent.getId())).thenReturn(true);
+        when(mockStudentRepository.findById(mockStudent.getId())).thenReturn(Optional.of(mockStudent));
         studentService.updateStudent(mockStudent);
         verify(mockStudentRepository).save(mockStudent);
     }
@@ -196,6 +478,15 @@ class StudentServiceTest {
     }
 
 
+    @Test
+    void setGradeForStudentById_WhenGradeIsNaNOrInfinity_ShouldThrowExceptionWithErrorCode_NOT_ACCEPTABLE() {
+        for (String grade : List.of("NaN", "Infinity", "-Infinity")) {
+            ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentService.setGradeForStudentById(1, grade));
+            assertEquals(NOT_ACCEPTABLE, exception.getStatusCode());
+        }
+        verify(mockStudentRepository, never()).updateGradeIfVersionMatches(anyInt(), anyDouble(), anyLong());
+    }
+
     @Test
     void setGradeForStudentById_WhenGradeIsFivePointOne_ShouldThrowResponseStatusException() {
         int studentId = 2;
@@ -283,12 +574,199 @@ class StudentServiceTest {
 
 
     @Test
-    void setGradeForStudentById_WhenStudentIdIsOneAndGradeIsFourPointSix_ShouldRunMetodSaveFromStudentRepository() {
+    void setGradeForStudentById_WhenStudentIdIsOneAndGradeIsFourPointSix_ShouldRunConditionalUpdateFromStudentRepository() {
         String validGrade = "4.6";
         int studentId = 1;
 
         when(mockStudentRepository.findById(studentId)).thenReturn(Optional.ofNullable(mockStudent));
+        when(mockStudent.getVersion()).thenReturn(3L);
         studentService.setGradeForStudentById(studentId, validGrade);
-        verify(mockStudentRepository).save(mockStudent);
+        verify(mockStudentRepository).updateGradeIfVersionMatches(studentId, 4.6, 3L);
+        verify(mockStudentRepository, never()).save(any());
+    }
+
+    @Test
+    void setGradeForStudentById_WhenAnotherWriterWinsFirstAttempt_ShouldRetryWithNewVersion() {
+        Student before = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        before.setVersion(3L);
+        Student after = new Student("Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        after.setVersion(4L);
+        after.setJavaProgrammingGrade(1.0);
+        when(mockStudentRepository.findById(1)).thenReturn(Optional.of(before), Optional.of(after));
+        when(mockStudentRepository.updateGradeIfVersionMatches(1, 4.5, 3L)).thenReturn(0);
+
+        Student student = studentService.setGradeForStudentById(1, "4.5");
+
+        assertEquals(5L, student.getVersion());
+        verify(mockStudentRepository).updateGradeIfVersionMatches(1, 4.5, 4L);
+        verify(mockEventPublisher).publishEvent(new StudentChangeEvent(StudentChange.updated(1, 1.0, 4.5, 5L)));
+    }
+
+    @Test
+    void setGradeForStudentById_WhenEveryAttemptLosesToAnotherWriter_ShouldThrowExceptionWithErrorCode_CONFLICT() {
+        when(mockStudentRepository.findById(1)).thenReturn(Optional.of(mockStudent));
+        when(mockStudentRepository.updateGradeIfVersionMatches(anyInt(), anyDouble(), anyLong())).thenReturn(0);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentService.setGradeForStudentById(1, "4.5"));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        verifyNoInteractions(mockEventPublisher);
+    }
+
+    @Test
+    void updateStudent_WhenSentVersionIsOutdated_ShouldThrowExceptionWithErrorCode_CONFLICT() {
+        Student stored = mockStudentList.get(0);
+        stored.setVersion(4L);
+        Student request = new Student("Malin", "Nilsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com");
+        request.setVersion(3L);
+        when(mockStudentRepository.findById(0)).thenReturn(Optional.of(stored));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> studentService.updateStudent(request));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        assertEquals("Olsson", stored.getLastName());
+        verify(mockStudentRepository, never()).save(any());
+    }
+
+    @Test
+    void updateStudent_WhenAnotherWriterCommitsFirst_ShouldThrowExceptionWithErrorCode_CONFLICT() {
+        when(mockStudentRepository.findById(0)).thenReturn(Optional.of(mockStudentList.get(0)));
+        doThrow(new ObjectOptimisticLockingFailureException(Student.class, 0)).when(mockStudentRepository).flush();
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> studentService.updateStudent(new Student("Malin", "Nilsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com")));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+        verifyNoInteractions(mockEventPublisher);
+    }
+
+    @Test
+    void updateStudent_WhenVersionIsNotSent_ShouldCopyChangesToStoredStudent() {
+        Student stored = mockStudentList.get(0);
+        stored.setVersion(4L);
+        when(mockStudentRepository.findById(0)).thenReturn(Optional.of(stored));
+
+        studentService.updateStudent(new Student("Malin", "Nilsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com"));
+
+        assertEquals("Nilsson", stored.getLastName());
+        verify(mockStudentRepository).save(stored);
+    }
+
+    @Test
+    void setGradesForStudents_WhenAStudentWasChangedConcurrently_ShouldThrowExceptionWithErrorCode_CONFLICT() {
+        Student student = mockStudentList.get(0);
+        student.setId(1);
+        when(mockStudentRepository.findAllById(List.of(1))).thenReturn(List.of(student));
+        EntityManager mockEntityManager = mock(EntityManager.class);
+        doThrow(new OptimisticLockException()).when(mockEntityManager).flush();
+        ReflectionTestUtils.setField(studentService, "entityManager", mockEntityManager);
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> studentService.setGradesForStudents(List.of(new GradeAssignment(1, "4.6"))));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatusCode());
+    }
+
+    @Test
+    void setGradesForStudents_WhenGradeIsWritten_ShouldPublishTheVersionTheFlushWrote() {
+        Student student = mockStudentList.get(0);
+        student.setId(1);
+        student.setJavaProgrammingGrade(2.0);
+        student.setVersion(0L);
+        when(mockStudentRepository.findAllById(List.of(1))).thenReturn(List.of(student));
+        EntityManager mockEntityManager = mock(EntityManager.class);
+        doAnswer(invocation -> {
+            student.setVersion(1L);
+            return null;
+        }).when(mockEntityManager).flush();
+        ReflectionTestUtils.setField(studentService, "entityManager", mockEntityManager);
+
+        studentService.setGradesForStudents(List.of(new GradeAssignment(1, "4.6")));
+
+        verify(mockEventPublisher).publishEvent(new StudentChangeEvent(StudentChange.updated(1, 2.0, 4.6, 1L)));
+    }
+
+    @Test
+    void setGradesForStudents_WhenNoGradeIsValid_ShouldNotPublishChange() {
+        studentService.setGradesForStudents(List.of(new GradeAssignment(1, "5.1"), new GradeAssignment(2, "x")));
+        verifyNoInteractions(mockEventPublisher);
+    }
+
+    @Test
+    void setGradesForStudents_WhenGradeIsAlreadySet_ShouldNotPublishChange() {
+        Student student = mockStudentList.get(0);
+        student.setId(1);
+        student.setJavaProgrammingGrade(4.6);
+        when(mockStudentRepository.findAllById(List.of(1))).thenReturn(List.of(student));
+
+        List<GradeResult> results = studentService.setGradesForStudents(List.of(new GradeAssignment(1, "4.6")));
+
+        assertEquals(HttpStatus.OK, results.get(0).status());
+        verifyNoInteractions(mockEventPublisher);
+    }
+
+    @Test
+    void setGradesForStudents_WhenGradeIsInvalid_ShouldReturnResultWithStatus_NOT_ACCEPTABLE() {
+        List<GradeResult> results = studentService.setGradesForStudents(List.of(new GradeAssignment(1, "5.1")));
+        assertEquals(NOT_ACCEPTABLE, results.get(0).status());
+        assertEquals("Valid grades are 0.0 - 5.0", results.get(0).message());
+    }
+
+    @Test
+    void setGradesForStudents_WhenStudentIsMissing_ShouldReturnResultWithStatus_NOT_FOUND() {
+        when(mockStudentRepository.findAllById(List.of(10))).thenReturn(List.of());
+        List<GradeResult> results = studentService.setGradesForStudents(List.of(new GradeAssignment(10, "3.5")));
+        assertEquals(HttpStatus.NOT_FOUND, results.get(0).status());
+    }
+
+    @Test
+    void setGradesForStudents_WhenStudentExists_ShouldSetGradeAndReturnResultWithStatus_OK() {
+        Student student = mockStudentList.get(0);
+        student.setId(1);
+        when(mockStudentRepository.findAllById(List.of(1))).thenReturn(List.of(student));
+        List<GradeResult> results = studentService.setGradesForStudents(List.of(new GradeAssignment(1, "4.6"), new GradeAssignment(2, "x")));
+        assertEquals(HttpStatus.OK, results.get(0).status());
+        assertEquals(NOT_ACCEPTABLE, results.get(1).status());
+        assertEquals(4.6, student.getJavaProgrammingGrade());
+    }
+
+    @Test
+    void setGradeForStudentById_WhenStudentHadAGrade_ShouldPublishChangeWithOldAndNewGrade() {
+        Student student = mockStudentList.get(0);
+        student.setJavaProgrammingGrade(2.0);
+        student.setVersion(0L);
+        when(mockStudentRepository.findById(1)).thenReturn(Optional.of(student));
+        studentService.setGradeForStudentById(1, "4.5");
+        verify(mockEventPublisher).publishEvent(new StudentChangeEvent(StudentChange.updated(1, 2.0, 4.5, 1L)));
+    }
+
+    @Test
+    void searchStudents_WhenLastNamePrefixAndNoSort_ShouldSortByLastNameThenIdAndSelectFromPageOffset() {
+        StudentView student = new StudentView(1, "Malin", "Olsson", LocalDate.of(1995, 6, 21), "malinolsson@gmail.com", 2.5, 0L);
+        when(mockStudentRepository.findViewsBy(any(Specification.class), any(Sort.class), anyLong(), anyInt()))
+                .thenReturn(Window.from(List.of(student), ScrollPosition::offset, true));
+
+        StudentSearchResult result = studentService.searchStudents(
+                new StudentSearchFilter(null, "Ols", null, null, null, 2.0, null), PageRequest.of(1, 20));
+
+        verify(mockStudentRepository).findViewsBy(any(Specification.class), eq(Sort.by("lastName").and(Sort.by("id"))), eq(20L), eq(20));
+        assertEquals("malinolsson@gmail.com", result.students().get(0).email());
+        assertEquals(1, result.page());
+        assertTrue(result.hasNext());
+    }
+
+    @Test
+    void searchStudents_WhenSortPropertyIsNotAllowed_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                studentService.searchStudents(new StudentSearchFilter(null, null, null, null, null, null, null), PageRequest.of(0, 20, Sort.by("version"))));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        assertEquals("Cannot sort by version", exception.getReason());
+    }
+
+    @Test
+    void searchStudents_WhenPageIsTooLarge_ShouldThrowExceptionWithErrorCode_BAD_REQUEST() {
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class, () ->
+                studentService.searchStudents(new StudentSearchFilter(null, null, null, null, null, null, null), PageRequest.of(0, 1001)));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+package se.verran.springbootdemowithtests.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.verran.springbootdemowithtests.dto.StudentGrade;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopScoringSelectorTest {
+    List<StudentGrade> studentGrades;
+
+    @BeforeEach
+    void setUp() {
+        studentGrades = List.of(
+                new StudentGrade(1, "Malin", "Olsson", 2.5),
+                new StudentGrade(2, "Kevin", "Andersson", 4.5),
+                new StudentGrade(3, "Gertrud", "Anks", 1.2),
+                new StudentGrade(4, "Lisa", "Svan", 3.7),
+                new StudentGrade(5, "Tom", "Anks", 2.3),
+                new StudentGrade(6, "Ed", "Olsson", 5.0),
+                new StudentGrade(7, "Edd", "Andersson", 4.9),
+                new StudentGrade(8, "Eddy", "Jonsson", 2.8));
+    }
+
+    @Test
+    void select_WhenEightStudentsArePresent_ShouldReturnAListOfTwo() {
+        assertEquals(2, TopScoringSelector.select(studentGrades.stream(), 2).size());
+    }
+
+    @Test
+    void select_WhenEightStudentsArePresent_ShouldReturnStudent6AtIndexZero() {
+        assertEquals(6, TopScoringSelector.select(studentGrades.stream(), 2).get(0).id());
+    }
+
+    @Test
+    void select_WhenEightStudentsArePresent_ShouldReturnStudent7AtIndexOne() {
+        assertEquals(7, TopScoringSelector.select(studentGrades.stream(), 2).get(1).id());
+    }
+
+    @Test
+    void select_WhenGradesAreEqual_ShouldReturnLowestIdFirst() {
+        Stream<StudentGrade> students = Stream.of(
+                new StudentGrade(9, "Lisa", "Svan", 4.0),
+                new StudentGrade(3, "Tom", "Anks", 4.0),
+                new StudentGrade(5, "Ed", "Olsson", 1.0));
+        assertEquals(3, TopScoringSelector.select(students, 2).get(0).id());
+    }
+
+    @Test
+    void select_WhenStudentIsUngraded_ShouldSkipStudent() {
+        Stream<StudentGrade> students = Stream.of(new StudentGrade(1, "Malin", "Olsson", null));
+        assertTrue(TopScoringSelector.select(students, 1).isEmpty());
+    }
+}